@@ -0,0 +1,165 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Class-wide view over CohortAnalytics: per-subject statistics, the grade histogram of the selected
+// subject and the top students by weighted average. Polls the registry version once a second
+// while shown and only redraws when something changed.
+public class AnalyticsPanel extends JPanel {
+    private static final int TOP = 20;
+
+    private final StudentRegistry registry;
+    private final CohortAnalytics analytics;
+    private final SubjectTableModel tableModel = new SubjectTableModel();
+    private final JTable table = new JTable(tableModel);
+    private final HistogramPanel histogram = new HistogramPanel();
+    private final DefaultListModel<String> topModel = new DefaultListModel<>();
+    private final JLabel header = new JLabel(" ");
+    private final Timer timer;
+    private long shownVersion = -1;
+
+    public AnalyticsPanel(StudentRegistry registry, CohortAnalytics analytics) {
+        super(new BorderLayout(8, 8));
+        this.registry = registry;
+        this.analytics = analytics;
+        setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setAutoCreateRowSorter(true);
+        table.getSelectionModel().addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) showHistogram(); });
+        JList<String> topList = new JList<>(topModel);
+        topList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JScrollPane topScroll = new JScrollPane(topList);
+        topScroll.setBorder(BorderFactory.createTitledBorder("Top " + TOP + " by weighted average"));
+        topScroll.setPreferredSize(new Dimension(260, 0));
+        histogram.setPreferredSize(new Dimension(0, 180));
+        histogram.setBorder(BorderFactory.createTitledBorder("Grade histogram"));
+
+        JPanel center = new JPanel(new BorderLayout(8, 8));
+        center.add(new JScrollPane(table), BorderLayout.CENTER);
+        center.add(histogram, BorderLayout.SOUTH);
+        add(header, BorderLayout.NORTH);
+        add(center, BorderLayout.CENTER);
+        add(topScroll, BorderLayout.EAST);
+
+        timer = new Timer(1000, e -> refresh());
+        addHierarchyListener(e -> {
+            if (isShowing()) { refresh(); timer.start(); } else timer.stop();
+        });
+    }
+
+    public void refresh() {
+        long v = registry.version();
+        if (v == shownVersion) return;
+        shownVersion = v;
+        String selected = selectedSubject();
+        tableModel.setRows(analytics.getAllSubjectStats());
+        header.setText(String.format(" %d students, %d ranked by weighted average, %d subjects",
+                registry.size(), analytics.getRankedCount(), tableModel.rows.size()));
+        topModel.clear();
+        int rank = 0;
+        for (Student s : analytics.top(TOP)) {
+            topModel.addElement(String.format("%3d. %-22s %6.2f", ++rank, s.getName(), s.getWeightedAverage().orElse(0)));
+        }
+        int row = tableModel.indexOf(selected);
+        if (row >= 0) {
+            int viewRow = table.convertRowIndexToView(row);
+            table.getSelectionModel().setSelectionInterval(viewRow, viewRow);
+        }
+        showHistogram();
+    }
+
+    private String selectedSubject() {
+        int viewRow = table.getSelectedRow();
+        if (viewRow < 0) return null;
+        return tableModel.rows.get(table.convertRowIndexToModel(viewRow)).subject;
+    }
+
+    private void showHistogram() {
+        int viewRow = table.getSelectedRow();
+        histogram.setStats(viewRow < 0 ? null : tableModel.rows.get(table.convertRowIndexToModel(viewRow)));
+    }
+
+    private static class SubjectTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = { "Subject", "Grades", "Mean", "Median", "P10", "P90", "Min", "Max" };
+        private List<CohortAnalytics.SubjectStats> rows = new ArrayList<>();
+
+        void setRows(List<CohortAnalytics.SubjectStats> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        int indexOf(String subject) {
+            for (int i = 0; subject != null && i < rows.size(); i++) {
+                if (rows.get(i).subject.equals(subject)) return i;
+            }
+            return -1;
+        }
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int c) { return COLUMNS[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            if (c == 0) return String.class;
+            if (c == 1) return Long.class;
+            if (c <= 3) return Double.class;
+            return Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            CohortAnalytics.SubjectStats s = rows.get(r);
+            switch (c) {
+                case 0: return s.subject;
+                case 1: return s.count;
+                case 2: return Math.round(s.mean * 100) / 100.0;
+                case 3: return s.median;
+                case 4: return s.p10;
+                case 5: return s.p90;
+                case 6: return s.min;
+                default: return s.max;
+            }
+        }
+    }
+
+    private static class HistogramPanel extends JPanel {
+        private CohortAnalytics.SubjectStats stats;
+
+        void setStats(CohortAnalytics.SubjectStats stats) { this.stats = stats; repaint(); }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Insets in = getInsets();
+            int w = getWidth() - in.left - in.right - 20;
+            int h = getHeight() - in.top - in.bottom - 30;
+            if (stats == null) {
+                g.setColor(Color.GRAY);
+                g.drawString("Select a subject", in.left + 10, in.top + 20);
+                return;
+            }
+            long max = 1;
+            for (int grade = 0; grade <= 100; grade++) max = Math.max(max, stats.countOf(grade));
+            int baseY = in.top + 10 + h;
+            int x0 = in.left + 10;
+            g.setColor(new Color(100, 149, 237));
+            for (int grade = 0; grade <= 100; grade++) {
+                int x = x0 + grade * w / 101;
+                int bw = Math.max(1, (grade + 1) * w / 101 - grade * w / 101 - 1);
+                int bh = (int) (stats.countOf(grade) * h / max);
+                g.fillRect(x, baseY - bh, bw, bh);
+            }
+            g.setColor(Color.DARK_GRAY);
+            g.drawLine(x0, baseY, x0 + w, baseY);
+            for (int grade = 0; grade <= 100; grade += 10) {
+                String label = String.valueOf(grade);
+                g.drawString(label, x0 + grade * w / 101, baseY + 15);
+            }
+            g.drawString(stats.subject + ": " + stats.count + " grades, peak " + max, x0, in.top + 12);
+        }
+    }
+}
@@ -1,47 +1,115 @@
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 public class CSVUtils {
+    public interface Progress {
+        void update(int done, int total);
+        // Returning true aborts the save with CancellationException and leaves the target untouched.
+        default boolean isCancelled() { return false; }
+    }
+    private static final int PROGRESS_INTERVAL = 4096;
+    static final String CSV_HEADER = "name,subject,grades,weight\n";
+
     public static void saveStudents(Path file, List<Student> students) throws IOException {
-        try (BufferedWriter bw = Files.newBufferedWriter(file)) {
-            bw.write("name,subject,grades,weight\n");
-            for (Student s : students) {
-                for (String line : s.toCsvLines()) {
-                    bw.write(line + "\n");
+        saveStudents(file, students, null);
+    }
+    public static void saveStudents(Path file, List<Student> students, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter bw = Files.newBufferedWriter(tmp)) {
+                bw.write(CSV_HEADER);
+                int done = 0;
+                StringBuilder sb = new StringBuilder(1 << 12);
+                for (Student s : students) {
+                    sb.setLength(0);
+                    s.appendCsvLines(sb);
+                    bw.append(sb);
+                    if (progress != null && ++done % PROGRESS_INTERVAL == 0) {
+                        progress.update(done, students.size());
+                        if (progress.isCancelled()) throw new CancellationException("Save cancelled");
+                    }
                 }
             }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Metrics.histogram("csv.save").recordSince(start);
+            Metrics.counter("csv.save.students").add(students.size());
+            Metrics.counter("csv.save.bytes").add(Files.size(file));
+            if (progress != null) progress.update(students.size(), students.size());
+        } finally {
+            Files.deleteIfExists(tmp);
         }
     }
- List<Student> loadStudents(Path file) throws IOException {
+    public static List<Student> loadStudents(Path file) throws IOException {
+        return loadStudents(file, null);
+    }
+    public static List<Student> loadStudents(Path file, CsvStreamLoader.Listener listener) throws IOException {
+        if (!Files.exists(file)) return new ArrayList<>();
+        return new ArrayList<>(new CsvStreamLoader(listener).load(file).values());
+    }
+    public static List<Student> loadStudentsParallel(Path file) throws IOException {
+        if (!Files.exists(file)) return new ArrayList<>();
+        return new ArrayList<>(new ParallelCsvLoader().load(file).values());
+    }
+    static List<Student> loadStudentsLineByLine(Path file) throws IOException {
         if (!Files.exists(file)) return new ArrayList<>();
         Map<String, Student> map = new HashMap<>();
+        long errors = 0;
         try (BufferedReader br = Files.newBufferedReader(file)) {
             String header = br.readLine(); 
             String line;
             while ((line = br.readLine()) != null) {
                 if (line.trim().isEmpty()) continue;
                 List<String> parts = parseCsvLine(line);
-                if (parts.size() < 3) continue;
+                if (parts.size() < 3) { errors++; continue; }
                 String name = parts.get(0).trim();
                 String subject = parts.get(1).trim();
                 String gradesPart = parts.get(2).trim();
                 double weight = 1.0;
                 if (parts.size() >= 4 && !parts.get(3).isEmpty()) {
-                    try { weight = Double.parseDouble(parts.get(3)); } catch (NumberFormatException ignored) {}
+                    try { weight = Double.parseDouble(parts.get(3)); } catch (NumberFormatException e) { errors++; }
                 }
                 Student s = map.computeIfAbsent(name.toLowerCase(), k -> new Student(name));
                 s.setSubjectWeight(subject, weight);
                 if (!gradesPart.isEmpty()) {
                     String[] gs = gradesPart.split(";");
                     for (String g : gs) {
-                        try { int gi = Integer.parseInt(g.trim()); s.addGrade(subject, gi); } catch (NumberFormatException ignored) {}
+                        try { int gi = Integer.parseInt(g.trim()); s.addGrade(subject, gi); } catch (NumberFormatException e) { if (!g.isBlank()) errors++; }
                     }
                 }
             }
         }
+        Metrics.counter("csv.load.errors").add(errors);
         return new ArrayList<>(map.values());
     }
-    private static List<String> parseCsvLine(String line) {
+    static final String SUMMARY_HEADER = "name,overall_avg,weighted_avg,subjects_count,highest,lowest\n";
+
+    // One line of the summary export for a student.
+    static String summaryRow(Student s) {
+        Student.Summary summary = new Student.Summary();
+        s.summarize(summary);
+        StringBuilder sb = new StringBuilder(64);
+        appendSummaryRow(sb, summary);
+        return sb.toString();
+    }
+
+    // Formats the row as String.format("%s,%s,%s,%d,%s,%s\n", ...) did, with "%.2f" averages and
+    // "-" for missing values.
+    static void appendSummaryRow(StringBuilder sb, Student.Summary s) {
+        sb.append(s.name).append(',');
+        if (s.graded) FixedPoint.append2(sb, s.overall); else sb.append('-');
+        sb.append(',');
+        if (s.subjects > 0) FixedPoint.append2(sb, s.weighted); else sb.append('-');
+        sb.append(',');
+        if (FixedPoint.plainLocale()) sb.append(s.subjects); else sb.append(String.format("%d", s.subjects));
+        sb.append(',');
+        if (s.subjects > 0) sb.append(s.highest); else sb.append('-');
+        sb.append(',');
+        if (s.subjects > 0) sb.append(s.lowest); else sb.append('-');
+        sb.append('\n');
+    }
+    static List<String> parseCsvLine(String line) {
         List<String> out = new ArrayList<>();
         StringBuilder cur = new StringBuilder();
         boolean inQuotes = false;
@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.PriorityQueue;
+
+// Class-wide statistics kept up to date from registry events. Grades are 0-100, so each subject is
+// a 101-bucket histogram (a counting sort that never needs sorting) and mean, median and any
+// percentile are read off it in constant time. Students are ranked by weighted average through a
+// Fenwick tree over 0.01-wide buckets, so a rank costs O(log n) and an update O(log n).
+//
+// Grades are append-only, so an update only folds in the grades past the count already seen for
+// each of the student's subjects; a removal takes all of them back out. Subjects are addressed by
+// SubjectDictionary id, both in the per-subject columns and in each student's seen counts, so a
+// tracked student costs one small int array rather than a map of boxed counts.
+public class CohortAnalytics implements StudentRegistry.Listener {
+    private static final int BUCKETS = 10001;  // weighted averages 0.00 .. 100.00
+
+    // Immutable view of one subject's distribution.
+    public static final class SubjectStats {
+        public final String subject;
+        public final long count;
+        public final double mean;
+        public final double median;
+        public final int p10;
+        public final int p90;
+        public final int min;
+        public final int max;
+        private final long[] histogram;
+
+        SubjectStats(String subject, long[] histogram, long count, long sum) {
+            this.subject = subject;
+            this.histogram = histogram;
+            this.count = count;
+            this.mean = count == 0 ? Double.NaN : (double) sum / count;
+            this.median = count == 0 ? Double.NaN
+                    : (count % 2 == 1 ? kth(histogram, count / 2 + 1) : (kth(histogram, count / 2) + kth(histogram, count / 2 + 1)) / 2.0);
+            this.p10 = nearestRank(histogram, count, 10);
+            this.p90 = nearestRank(histogram, count, 90);
+            this.min = count == 0 ? -1 : kth(histogram, 1);
+            this.max = count == 0 ? -1 : kth(histogram, count);
+        }
+
+        // Number of grades equal to grade.
+        public long countOf(int grade) { return histogram[grade]; }
+
+        // Nearest-rank percentile: the smallest grade with at least p% of the grades at or below it.
+        public int percentile(double p) { return nearestRank(histogram, count, p); }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private static final class Tracked {
+        int[] seen = NONE;  // seen[id]: grades of subject id already folded into its column
+        int bucket = -1;
+        double weighted;
+    }
+
+    private static final class Column {
+        final long[] histogram = new long[101];
+        long count;
+        long sum;
+    }
+
+    private final StudentRegistry registry;
+    private Column[] columns = new Column[0];  // by subject id; null while a subject has no grades
+    private final Map<Student, Tracked> tracked = new IdentityHashMap<>();
+    private final long[] tree = new long[BUCKETS + 1];
+    private int ranked;
+
+    private CohortAnalytics(StudentRegistry registry) { this.registry = registry; }
+
+    // Starts listening first and then folds in the existing roster; a student seen both ways is
+    // only counted once.
+    public static CohortAnalytics attach(StudentRegistry registry) {
+        CohortAnalytics a = new CohortAnalytics(registry);
+        registry.addListener(a);
+        for (Student s : registry.students()) a.studentChanged(s);
+        return a;
+    }
+
+    public void detach() { registry.removeListener(this); }
+
+    @Override public void studentAdded(Student s) { studentChanged(s); }
+
+    @Override
+    public synchronized void studentChanged(Student s) {
+        Tracked t = tracked.get(s);
+        if (t == null) {
+            // Skip a student that was removed before its add or change event got here.
+            if (registry.getByKey(s.getKey()) != s) return;
+            t = new Tracked();
+            tracked.put(s, t);
+        }
+        Student.State st = s.state();
+        for (int i = 0; i < st.gradedIds.length; i++) {
+            int id = st.gradedIds[i];
+            SubjectGrades.Run r = st.runs[i];
+            int from = id < t.seen.length ? t.seen[id] : 0;
+            if (from == r.count) continue;
+            Column c = column(id);
+            for (int k = from; k < r.count; k++) {
+                int g = r.grades[k];
+                c.histogram[g]++;
+                c.sum += g;
+            }
+            c.count += r.count - from;
+            if (id >= t.seen.length) t.seen = Arrays.copyOf(t.seen, Math.max(id + 1, SubjectDictionary.size()));
+            t.seen[id] = r.count;
+        }
+        OptionalDouble w = s.getWeightedAverage();
+        rerank(t, w.isPresent() ? bucketOf(w.getAsDouble()) : -1, w.orElse(Double.NaN));
+    }
+
+    @Override
+    public synchronized void studentRemoved(Student s) {
+        Tracked t = tracked.remove(s);
+        if (t == null) return;
+        // Grades are append-only, so the first seen[id] grades are still the ones folded in.
+        Student.State st = s.state();
+        for (int i = 0; i < st.gradedIds.length; i++) {
+            int id = st.gradedIds[i];
+            int n = id < t.seen.length ? t.seen[id] : 0;
+            if (n == 0) continue;
+            Column c = columns[id];
+            byte[] grades = st.runs[i].grades;
+            for (int k = 0; k < n; k++) {
+                int g = grades[k];
+                c.histogram[g]--;
+                c.sum -= g;
+            }
+            c.count -= n;
+            if (c.count == 0) columns[id] = null;
+        }
+        rerank(t, -1, Double.NaN);
+    }
+
+    // Subjects with grades, in name order.
+    public synchronized List<String> getSubjects() {
+        List<String> out = new ArrayList<>();
+        for (int id : idsByName()) out.add(SubjectDictionary.name(id));
+        return out;
+    }
+
+    // Null if no grades have been seen for the subject.
+    public synchronized SubjectStats getSubjectStats(String subject) {
+        int id = SubjectDictionary.find(subject.trim());
+        Column c = id >= 0 && id < columns.length ? columns[id] : null;
+        if (c == null) return null;
+        return new SubjectStats(subject.trim(), c.histogram.clone(), c.count, c.sum);
+    }
+
+    public synchronized List<SubjectStats> getAllSubjectStats() {
+        List<SubjectStats> out = new ArrayList<>();
+        for (int id : idsByName()) {
+            Column c = columns[id];
+            out.add(new SubjectStats(SubjectDictionary.name(id), c.histogram.clone(), c.count, c.sum));
+        }
+        return out;
+    }
+
+    // Number of students with a weighted average.
+    public synchronized int getRankedCount() { return ranked; }
+
+    // 1-based rank by weighted average, highest first, at 0.01 resolution (students whose averages
+    // print the same share a rank); -1 if the student has no weighted average.
+    public synchronized int rankOf(Student s) {
+        Tracked t = tracked.get(s);
+        if (t == null || t.bucket < 0) return -1;
+        return 1 + (int) (ranked - prefix(t.bucket));
+    }
+
+    // Number of students whose weighted average is at least the given value, at 0.01 resolution.
+    public synchronized int countAtLeast(double weightedAverage) {
+        int b = bucketOf(weightedAverage);
+        return (int) (ranked - (b == 0 ? 0 : prefix(b - 1)));
+    }
+
+    // The top n students by weighted average, ties broken by name; a bounded heap keeps it O(n log top).
+    public synchronized List<Student> top(int n) {
+        Comparator<Map.Entry<Student, Tracked>> best = Comparator
+                .<Map.Entry<Student, Tracked>>comparingDouble(e -> -e.getValue().weighted)
+                .thenComparing(e -> e.getKey().getName(), String.CASE_INSENSITIVE_ORDER);
+        PriorityQueue<Map.Entry<Student, Tracked>> heap = new PriorityQueue<>(best.reversed());
+        for (Map.Entry<Student, Tracked> e : tracked.entrySet()) {
+            if (e.getValue().bucket < 0 || n <= 0) continue;
+            if (heap.size() < n) heap.add(e);
+            else if (best.compare(e, heap.peek()) < 0) { heap.poll(); heap.add(e); }
+        }
+        List<Map.Entry<Student, Tracked>> sorted = new ArrayList<>(heap);
+        sorted.sort(best);
+        List<Student> out = new ArrayList<>(sorted.size());
+        for (Map.Entry<Student, Tracked> e : sorted) out.add(e.getKey());
+        return out;
+    }
+
+    private Column column(int id) {
+        if (id >= columns.length) columns = Arrays.copyOf(columns, Math.max(id + 1, SubjectDictionary.size()));
+        Column c = columns[id];
+        if (c == null) columns[id] = c = new Column();
+        return c;
+    }
+
+    private List<Integer> idsByName() {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < columns.length; id++) {
+            if (columns[id] != null) ids.add(id);
+        }
+        ids.sort(Comparator.comparing(SubjectDictionary::name));
+        return ids;
+    }
+
+    private void rerank(Tracked t, int bucket, double weighted) {
+        t.weighted = weighted;
+        if (t.bucket == bucket) return;
+        if (t.bucket >= 0) { add(t.bucket, -1); ranked--; }
+        if (bucket >= 0) { add(bucket, 1); ranked++; }
+        t.bucket = bucket;
+    }
+
+    private static int bucketOf(double v) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.round(v * 100)));
+    }
+
+    private void add(int bucket, long delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) tree[i] += delta;
+    }
+
+    // Students in buckets 0..bucket.
+    private long prefix(int bucket) {
+        long sum = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    // The k-th smallest grade (1-based).
+    private static int kth(long[] histogram, long k) {
+        long seen = 0;
+        for (int g = 0; g < histogram.length; g++) {
+            seen += histogram[g];
+            if (seen >= k) return g;
+        }
+        return histogram.length - 1;
+    }
+
+    private static int nearestRank(long[] histogram, long count, double p) {
+        if (count == 0) return -1;
+        long k = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        return kth(histogram, Math.min(k, count));
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+// Streaming gradebook CSV loader. Lines are scanned straight out of a reused char buffer:
+// fields are unquoted into a scratch array, grades are parsed without substrings and subject
+// names are resolved to SubjectDictionary ids through a per-loader table, so steady-state
+// allocation is roughly one String per new student.
+// Line splitting, quoting, trimming and header handling match CSVUtils.parseCsvLine/readLine.
+// Malformed values (short rows, unparseable grades or weights) are skipped as before but counted
+// in getParseErrors() and the "csv.load.errors" metric.
+public class CsvStreamLoader {
+    public interface Listener {
+        default void studentCreated(Student s) {}
+        default void progress(long rows, long elapsedNanos) {}
+        // Polled with every progress report; returning true aborts the load with CancellationException.
+        default boolean isCancelled() { return false; }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_INTERVAL = 1 << 14;
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final Listener listener;
+    // Keyed by lower-cased name, in the order each student first appears in the file.
+    private final Map<String, Student> students = new LinkedHashMap<>();
+    private final SubjectIds subjects = new SubjectIds();
+
+    private char[] fields = new char[256];
+    private byte[] rowGrades = new byte[16];
+    private int[] fieldStart = new int[8];
+    private int[] fieldEnd = new int[8];
+    private int fieldCount;
+
+    private String lastName;
+    private Student lastStudent;
+    private char[] lastWeight = new char[16];
+    private int lastWeightLen = -1;
+    private double lastWeightValue;
+
+    private boolean headerPending = true;
+    private long rows;
+    private long parseErrors;
+    private long charsRead;
+    private long startNanos;
+    private long elapsedNanos;
+
+    public CsvStreamLoader() { this(NO_LISTENER); }
+    public CsvStreamLoader(Listener listener) { this.listener = listener == null ? NO_LISTENER : listener; }
+
+    public Map<String, Student> load(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (Reader in = Files.newBufferedReader(file)) {
+            load(in);
+        }
+        recordLoad(start, rows, Files.size(file), parseErrors);
+        return students;
+    }
+
+    static void recordLoad(long startNanos, long rows, long bytes, long parseErrors) {
+        Metrics.histogram("csv.load").recordSince(startNanos);
+        Metrics.counter("csv.load.rows").add(rows);
+        Metrics.counter("csv.load.bytes").add(bytes);
+        Metrics.counter("csv.load.errors").add(parseErrors);
+    }
+
+    public Map<String, Student> load(Reader in) throws IOException {
+        startNanos = System.nanoTime();
+        char[] buf = new char[BUFFER_SIZE];
+        int start = 0, end = 0, scan = 0;
+        boolean eof = false, skipLF = false;
+        while (true) {
+            if (skipLF && start < end) {
+                if (buf[start] == '\n') start++;
+                scan = start;
+                skipLF = false;
+            }
+            int i = scan;
+            while (i < end && buf[i] != '\n' && buf[i] != '\r') i++;
+            if (i < end) {
+                processLine(buf, start, i);
+                skipLF = buf[i] == '\r';
+                start = scan = i + 1;
+                continue;
+            }
+            if (eof) {
+                if (start < end) processLine(buf, start, end);
+                break;
+            }
+            scan = end - start;
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, end - start);
+                end -= start;
+                start = 0;
+            }
+            if (end == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            int n = in.read(buf, end, buf.length - end);
+            if (n < 0) eof = true;
+            else { end += n; charsRead += n; }
+        }
+        finish();
+        return students;
+    }
+
+    // Parses a region holding only whole lines. The header is skipped only if the region
+    // starts at the beginning of the file.
+    Map<String, Student> load(char[] buf, int off, int len, boolean skipHeader) {
+        startNanos = System.nanoTime();
+        headerPending = skipHeader;
+        int end = off + len;
+        int start = off;
+        int i = off;
+        while (i < end) {
+            char c = buf[i];
+            if (c == '\n' || c == '\r') {
+                processLine(buf, start, i);
+                if (c == '\r' && i + 1 < end && buf[i + 1] == '\n') i++;
+                start = i + 1;
+            }
+            i++;
+        }
+        if (start < end) processLine(buf, start, end);
+        finish();
+        return students;
+    }
+
+    public long getRows() { return rows; }
+    public long getParseErrors() { return parseErrors; }
+    public long getCharsRead() { return charsRead; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public double getRowsPerSecond() { return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos; }
+
+    private void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        listener.progress(rows, elapsedNanos);
+    }
+
+    private void processLine(char[] buf, int from, int to) {
+        if (headerPending) { headerPending = false; return; }
+        int i = from;
+        while (i < to && buf[i] <= ' ') i++;
+        if (i == to) return;
+        splitFields(buf, from, to);
+        if (fieldCount < 3) { parseErrors++; return; }
+        rows++;
+
+        Student s = studentFor(trimStart(0), trimEnd(0));
+        int subject = subjects.idOf(fields, trimStart(1), trimEnd(1));
+        double weight = 1.0;
+        if (fieldCount >= 4 && fieldEnd[3] > fieldStart[3]) weight = parseWeight(fieldStart[3], fieldEnd[3], weight);
+        s.setSubjectWeight(subject, weight);
+
+        // The row's grades go in with one appendGrades call, so the student is locked once per row.
+        int gs = trimStart(2), ge = trimEnd(2);
+        int tok = gs;
+        int n = 0;
+        for (int j = gs; j <= ge; j++) {
+            if (j == ge || fields[j] == ';') {
+                int ts = tok, te = j;
+                while (ts < te && fields[ts] <= ' ') ts++;
+                while (te > ts && fields[te - 1] <= ' ') te--;
+                int g = parseGrade(ts, te);
+                if (g == Integer.MIN_VALUE) {
+                    if (ts < te) parseErrors++;
+                } else {
+                    if (g < 0 || g > 100) throw new IllegalArgumentException("Grade must be 0-100");
+                    if (n == rowGrades.length) rowGrades = Arrays.copyOf(rowGrades, n * 2);
+                    rowGrades[n++] = (byte) g;
+                }
+                tok = j + 1;
+            }
+        }
+        s.appendGrades(subject, rowGrades, 0, n);
+        if ((rows & (PROGRESS_INTERVAL - 1)) == 0) {
+            listener.progress(rows, System.nanoTime() - startNanos);
+            if (listener.isCancelled()) throw new CancellationException("Load cancelled");
+        }
+    }
+
+    private void splitFields(char[] buf, int from, int to) {
+        if (fields.length < to - from) fields = new char[Math.max(to - from, fields.length * 2)];
+        fieldCount = 0;
+        int out = 0;
+        int fs = 0;
+        boolean inQuotes = false;
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (inQuotes) {
+                if (c == '\"') {
+                    if (i + 1 < to && buf[i + 1] == '\"') { fields[out++] = '\"'; i++; }
+                    else { inQuotes = false; }
+                } else fields[out++] = c;
+            } else {
+                if (c == ',') { addField(fs, out); fs = out; }
+                else if (c == '\"') { inQuotes = true; }
+                else fields[out++] = c;
+            }
+        }
+        addField(fs, out);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private int trimStart(int f) {
+        int i = fieldStart[f], e = fieldEnd[f];
+        while (i < e && fields[i] <= ' ') i++;
+        return i;
+    }
+
+    private int trimEnd(int f) {
+        int s = trimStart(f), i = fieldEnd[f];
+        while (i > s && fields[i - 1] <= ' ') i--;
+        return i;
+    }
+
+    private Student studentFor(int from, int to) {
+        if (lastName != null && lastName.length() == to - from) {
+            boolean same = true;
+            for (int i = 0; i < to - from && same; i++) same = lastName.charAt(i) == fields[from + i];
+            if (same) return lastStudent;
+        }
+        String name = new String(fields, from, to - from);
+        String key = name.toLowerCase();
+        Student s = students.get(key);
+        if (s == null) {
+            s = new Student(name);
+            students.put(key, s);
+            listener.studentCreated(s);
+        }
+        lastName = name;
+        lastStudent = s;
+        return s;
+    }
+
+    private double parseWeight(int from, int to, double fallback) {
+        int len = to - from;
+        if (len == lastWeightLen && Arrays.equals(fields, from, to, lastWeight, 0, len)) return lastWeightValue;
+        double w;
+        try { w = Double.parseDouble(new String(fields, from, len)); } catch (NumberFormatException e) { parseErrors++; return fallback; }
+        if (lastWeight.length < len) lastWeight = new char[len];
+        System.arraycopy(fields, from, lastWeight, 0, len);
+        lastWeightLen = len;
+        lastWeightValue = w;
+        return w;
+    }
+
+    // Returns Integer.MIN_VALUE where Integer.parseInt would throw.
+    private int parseGrade(int from, int to) {
+        if (from == to) return Integer.MIN_VALUE;
+        int i = from;
+        boolean neg = false;
+        char c = fields[i];
+        if (c == '-' || c == '+') { neg = c == '-'; i++; }
+        if (i == to || to - i > 9) return parseGradeSlow(from, to);
+        int v = 0;
+        for (; i < to; i++) {
+            int d = fields[i] - '0';
+            if (d < 0 || d > 9) return parseGradeSlow(from, to);
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    private int parseGradeSlow(int from, int to) {
+        try { return Integer.parseInt(new String(fields, from, to - from)); } catch (NumberFormatException e) { return Integer.MIN_VALUE; }
+    }
+
+    // Open-addressed table mapping subject characters to their SubjectDictionary id, so the shared
+    // dictionary is consulted once per distinct subject rather than once per row.
+    private static final class SubjectIds {
+        private String[] table = new String[64];
+        private int[] ids = new int[64];
+        private int size;
+
+        int idOf(char[] cs, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + cs[i];
+            int mask = table.length - 1;
+            int slot = (h ^ (h >>> 16)) & mask;
+            String s;
+            while ((s = table[slot]) != null) {
+                if (s.hashCode() == h && matches(s, cs, from, to)) return ids[slot];
+                slot = (slot + 1) & mask;
+            }
+            int id = SubjectDictionary.id(new String(cs, from, to - from));
+            table[slot] = SubjectDictionary.name(id);
+            ids[slot] = id;
+            if (++size * 2 > table.length) rehash();
+            return id;
+        }
+
+        private static boolean matches(String s, char[] cs, int from, int to) {
+            if (s.length() != to - from) return false;
+            for (int i = from; i < to; i++) if (s.charAt(i - from) != cs[i]) return false;
+            return true;
+        }
+
+        private void rehash() {
+            String[] old = table;
+            int[] oldIds = ids;
+            table = new String[old.length * 2];
+            ids = new int[old.length * 2];
+            int mask = table.length - 1;
+            for (int i = 0; i < old.length; i++) {
+                String s = old[i];
+                if (s == null) continue;
+                int h = s.hashCode();
+                int slot = (h ^ (h >>> 16)) & mask;
+                while (table[slot] != null) slot = (slot + 1) & mask;
+                table[slot] = s;
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Live view of Metrics: latency percentiles per operation, counters with their throughput (a
+// counter "op.x" is divided by the total time recorded for "op") and the last EDT stall stack.
+// Refreshes once a second while shown; the same data is available over JMX.
+public class DiagnosticsPanel extends JPanel {
+    private final LatencyModel latencyModel = new LatencyModel();
+    private final CounterModel counterModel = new CounterModel();
+    private final JTextArea notes = new JTextArea(6, 0);
+    private final Timer timer;
+
+    public DiagnosticsPanel() {
+        super(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JTable latencies = new JTable(latencyModel);
+        latencies.setAutoCreateRowSorter(true);
+        JScrollPane latencyScroll = new JScrollPane(latencies);
+        latencyScroll.setBorder(BorderFactory.createTitledBorder("Latency (ms)"));
+        JTable counters = new JTable(counterModel);
+        counters.setAutoCreateRowSorter(true);
+        JScrollPane counterScroll = new JScrollPane(counters);
+        counterScroll.setBorder(BorderFactory.createTitledBorder("Counters"));
+        notes.setEditable(false);
+        notes.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        JScrollPane notesScroll = new JScrollPane(notes);
+        notesScroll.setBorder(BorderFactory.createTitledBorder("Last EDT stall"));
+
+        JButton reset = new JButton("Reset");
+        reset.addActionListener(e -> { Metrics.reset(); refresh(); });
+        JPanel south = new JPanel(new BorderLayout(8, 8));
+        south.add(notesScroll, BorderLayout.CENTER);
+        south.add(reset, BorderLayout.EAST);
+
+        JSplitPane tables = new JSplitPane(JSplitPane.VERTICAL_SPLIT, latencyScroll, counterScroll);
+        tables.setResizeWeight(0.5);
+        add(tables, BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+
+        timer = new Timer(1000, e -> refresh());
+        addHierarchyListener(e -> {
+            if (isShowing()) { refresh(); timer.start(); } else timer.stop();
+        });
+    }
+
+    public void refresh() {
+        Map<String, Metrics.Snapshot> latencies = Metrics.latencies();
+        latencyModel.setRows(new ArrayList<>(latencies.entrySet()));
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> e : Metrics.counters().entrySet()) {
+            String name = e.getKey();
+            int dot = name.lastIndexOf('.');
+            Metrics.Snapshot op = dot < 0 ? null : latencies.get(name.substring(0, dot));
+            Double rate = op == null || op.getTotalMillis() == 0 ? null : Math.round(e.getValue() * 1000.0 / op.getTotalMillis() * 10) / 10.0;
+            rows.add(new Object[] { name, e.getValue(), rate });
+        }
+        counterModel.setRows(rows);
+        String stall = Metrics.notes().get("edt.lastStall");
+        String text = stall == null ? "No stalls recorded." : stall;
+        if (!text.equals(notes.getText())) { notes.setText(text); notes.setCaretPosition(0); }
+    }
+
+    private static double ms(double v) { return Math.round(v * 1000) / 1000.0; }
+
+    private static class LatencyModel extends AbstractTableModel {
+        private static final String[] COLUMNS = { "Operation", "Count", "Mean", "P50", "P90", "P99", "Max", "Total" };
+        private List<Map.Entry<String, Metrics.Snapshot>> rows = new ArrayList<>();
+
+        void setRows(List<Map.Entry<String, Metrics.Snapshot>> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int c) { return COLUMNS[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            if (c == 0) return String.class;
+            if (c == 1) return Long.class;
+            return Double.class;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Metrics.Snapshot s = rows.get(r).getValue();
+            switch (c) {
+                case 0: return rows.get(r).getKey();
+                case 1: return s.getCount();
+                case 2: return ms(s.getMeanMillis());
+                case 3: return ms(s.getP50Millis());
+                case 4: return ms(s.getP90Millis());
+                case 5: return ms(s.getP99Millis());
+                case 6: return ms(s.getMaxMillis());
+                default: return ms(s.getTotalMillis());
+            }
+        }
+    }
+
+    private static class CounterModel extends AbstractTableModel {
+        private static final String[] COLUMNS = { "Counter", "Value", "Per second" };
+        private List<Object[]> rows = new ArrayList<>();
+
+        void setRows(List<Object[]> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int c) { return COLUMNS[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            if (c == 0) return String.class;
+            if (c == 1) return Long.class;
+            return Double.class;
+        }
+
+        @Override public Object getValueAt(int r, int c) { return rows.get(r)[c]; }
+    }
+}
@@ -0,0 +1,63 @@
+import javax.swing.SwingUtilities;
+
+// Detects event-dispatch-thread stalls. A daemon thread posts a heartbeat to the EDT every
+// PERIOD_MS and records how long it queued in "edt.latency". A heartbeat still pending after
+// STALL_MS counts once in "edt.stalls" and the EDT's stack at that moment is noted as
+// "edt.lastStall", which is usually the code that is blocking it.
+final class EdtWatchdog implements Runnable {
+    static final long PERIOD_MS = 50;
+    static final long STALL_MS = 100;
+    private static final int MAX_FRAMES = 24;
+
+    private final Thread thread = new Thread(this, "edt-watchdog");
+    private volatile Thread edt;
+    private volatile long pendingSince;
+    private volatile boolean running = true;
+
+    static EdtWatchdog start() {
+        EdtWatchdog w = new EdtWatchdog();
+        w.thread.setDaemon(true);
+        w.thread.start();
+        return w;
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        boolean reported = false;
+        try {
+            while (running) {
+                long pending = pendingSince;
+                if (pending == 0) {
+                    long posted = System.nanoTime();
+                    pendingSince = posted;
+                    reported = false;
+                    SwingUtilities.invokeLater(() -> {
+                        edt = Thread.currentThread();
+                        Metrics.histogram("edt.latency").recordSince(posted);
+                        pendingSince = 0;
+                    });
+                } else if (!reported && System.nanoTime() - pending > STALL_MS * 1_000_000) {
+                    reported = true;
+                    Metrics.counter("edt.stalls").increment();
+                    Thread t = edt;
+                    if (t != null) Metrics.note("edt.lastStall", describe(t.getStackTrace()));
+                }
+                Thread.sleep(PERIOD_MS);
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private static String describe(StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder(String.format("EDT blocked over %d ms at %tT%n", STALL_MS, System.currentTimeMillis()));
+        for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) sb.append("    at ").append(stack[i]).append('\n');
+        if (stack.length > MAX_FRAMES) sb.append("    ... ").append(stack.length - MAX_FRAMES).append(" more\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// Appends numbers exactly as String.format("%.2f", v) would in the default format locale, without
+// a Formatter per call. Formatter rounds the shortest decimal form of the double half-up, which
+// only differs from rounding v * 100 near a tie, so those values, negatives, non-finite values,
+// values of 1e7 and over (where v * 100 carries too few fraction bits to tell a tie apart) and
+// locales with other digits or decimal separators all take the String.format path.
+final class FixedPoint {
+    private static final class LocaleCheck {
+        final Locale locale;
+        final boolean plain;
+        LocaleCheck(Locale locale) {
+            DecimalFormatSymbols d = DecimalFormatSymbols.getInstance(locale);
+            this.locale = locale;
+            this.plain = d.getZeroDigit() == '0' && d.getDecimalSeparator() == '.';
+        }
+    }
+
+    private static volatile LocaleCheck check;
+
+    private FixedPoint() {}
+
+    // True when the default format locale prints integers and decimals as plain ASCII.
+    static boolean plainLocale() {
+        Locale l = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleCheck c = check;
+        if (c == null || c.locale != l) check = c = new LocaleCheck(l);
+        return c.plain;
+    }
+
+    static void append2(StringBuilder sb, double v) {
+        if (Double.doubleToRawLongBits(v) >= 0 && v < 1e7 && plainLocale()) {
+            double scaled = v * 100;
+            long whole = (long) scaled;
+            double frac = scaled - whole;
+            if (Math.abs(frac - 0.5) > 1e-6) {
+                long cents = frac > 0.5 ? whole + 1 : whole;
+                int c = (int) (cents % 100);
+                sb.append(cents / 100).append('.');
+                if (c < 10) sb.append('0');
+                sb.append(c);
+                return;
+            }
+        }
+        sb.append(String.format("%.2f", v));
+    }
+}
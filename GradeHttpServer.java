@@ -0,0 +1,303 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Read-only JSON view of a live registry over HTTP, bound to the loopback interface so only tools
+// on the same host can reach it:
+//
+//   GET /students            summary row per student (streamed)
+//   GET /students/{name}     one student: averages, rank and every subject with its grades
+//   GET /subjects            class-wide statistics per subject
+//   GET /subjects/{subject}  one subject's statistics and grade histogram
+//
+// Every successful response carries the registry version as its ETag, so a client revalidating
+// with If-None-Match gets 304 until something changes; the path is resolved first, so a missing
+// student or subject is a 404 whatever the tag. Rendered bodies are cached per path for the
+// version they were rendered at; the roster listing is streamed instead. Requests run on virtual
+// threads where the JDK has them and on a fixed pool of daemon threads otherwise.
+//
+// The GUI starts one when -Dgradetracker.http.port is set; it can also run on its own:
+//   java GradeHttpServer [-port N] [-threads N] [-weights overwrite|keep|max] gradebook.csv|gradebook.gtb|gradebook.gseg ...
+public class GradeHttpServer {
+    public static final String PORT_PROPERTY = "gradetracker.http.port";
+    private static final int CACHE_BODY_LIMIT = 1 << 20;
+    private static final int CACHE_ENTRIES = 4096;
+
+    private static final class Cached {
+        final long version;
+        final int status;
+        final byte[] body;
+        Cached(long version, int status, byte[] body) { this.version = version; this.status = status; this.body = body; }
+    }
+
+    private final StudentRegistry registry;
+    private final CohortAnalytics analytics;
+    private final boolean ownsAnalytics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    private GradeHttpServer(StudentRegistry registry, CohortAnalytics analytics, int port, int threads) throws IOException {
+        this.registry = registry;
+        this.ownsAnalytics = analytics == null;
+        this.analytics = analytics != null ? analytics : CohortAnalytics.attach(registry);
+        this.executor = newExecutor(threads);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    // Port 0 picks a free port; see getPort(). Analytics may be null, in which case the server
+    // keeps its own for as long as it runs.
+    public static GradeHttpServer start(StudentRegistry registry, CohortAnalytics analytics, int port) throws IOException {
+        return start(registry, analytics, port, Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Threads only bounds the fallback pool; virtual threads are not pooled.
+    static GradeHttpServer start(StudentRegistry registry, CohortAnalytics analytics, int port, int threads) throws IOException {
+        GradeHttpServer s = new GradeHttpServer(registry, analytics, port, threads);
+        s.server.start();
+        return s;
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (ownsAnalytics) analytics.detach();
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int port = 8080;
+        int threads = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+        Student.WeightConflictPolicy weights = Student.WeightConflictPolicy.OVERWRITE;
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("-port") && i + 1 < args.length) port = Integer.parseInt(args[++i]);
+                else if (a.equals("-threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                else if (a.equals("-weights") && i + 1 < args.length) weights = GradeReportCli.weightPolicy(args[++i]);
+                else if (a.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + a);
+                else inputs.add(Paths.get(a));
+            }
+            if (port < 0 || port > 65535) throw new IllegalArgumentException("Port must be 0-65535");
+            if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java GradeHttpServer [-port N] [-threads N] [-weights overwrite|keep|max] gradebook.csv|gradebook.gtb|gradebook.gseg ...");
+            System.exit(2);
+            return;
+        }
+        StudentRegistry registry = new StudentRegistry();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            GradeReportCli.load(inputs, pool, registry, weights);
+            GradeHttpServer s = start(registry, null, port, threads);
+            System.err.printf("Serving %d students on http://%s:%d/%n", registry.size(),
+                    InetAddress.getLoopbackAddress().getHostAddress(), s.getPort());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.getResponseHeaders().set("Allow", "GET");
+                sendError(ex, 405, "Only GET is supported");
+                return;
+            }
+            // Read before rendering: a body can only be newer than its tag, never older.
+            long version = registry.version();
+            String etag = "\"" + version + "\"";
+            String path = ex.getRequestURI().getRawPath();
+            if (path.length() > 1 && path.endsWith("/")) path = path.substring(0, path.length() - 1);
+            if (path.equals("/students")) {
+                if (!notModified(ex, etag)) streamRoster(ex, etag);
+                return;
+            }
+            Cached c = cache.get(path);
+            if (c == null || c.version != version) {
+                c = render(path, version);
+                if (c.body.length <= CACHE_BODY_LIMIT) {
+                    if (cache.size() >= CACHE_ENTRIES) cache.clear();
+                    cache.put(path, c);
+                }
+            }
+            if (c.status == 200) {
+                if (notModified(ex, etag)) return;
+                ex.getResponseHeaders().set("ETag", etag);
+            }
+            send(ex, c.status, c.body);
+        } catch (RuntimeException e) {
+            // Once a streamed response has started the only option is to cut it short.
+            if (ex.getResponseCode() != -1) return;
+            boolean badRequest = e instanceof IllegalArgumentException;
+            sendError(ex, badRequest ? 400 : 500, badRequest ? "Malformed path" : String.valueOf(e.getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Sends 304 if the request's If-None-Match already names this version.
+    private static boolean notModified(HttpExchange ex, String etag) throws IOException {
+        String match = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (match == null || !(match.equals(etag) || match.equals("W/" + etag) || match.equals("*"))) return false;
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.sendResponseHeaders(304, -1);
+        return true;
+    }
+
+    private Cached render(String path, long version) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(4096);
+        Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(w);
+        int status = 200;
+        if (path.equals("/subjects")) {
+            json.beginArray();
+            for (CohortAnalytics.SubjectStats stats : analytics.getAllSubjectStats()) writeStats(json, stats, false);
+            json.endArray();
+        } else if (path.startsWith("/subjects/")) {
+            CohortAnalytics.SubjectStats stats = analytics.getSubjectStats(decode(path.substring("/subjects/".length())));
+            if (stats == null) { status = 404; writeError(json, "No grades for subject"); }
+            else writeStats(json, stats, true);
+        } else if (path.startsWith("/students/")) {
+            Student s = registry.get(decode(path.substring("/students/".length())));
+            if (s == null) { status = 404; writeError(json, "Unknown student"); }
+            else writeStudent(json, s);
+        } else {
+            status = 404;
+            writeError(json, "Not found");
+        }
+        json.flush();
+        return new Cached(version, status, buf.toByteArray());
+    }
+
+    private void streamRoster(HttpExchange ex, String etag) throws IOException {
+        ex.getResponseHeaders().set("ETag", etag);
+        setJsonHeaders(ex);
+        ex.sendResponseHeaders(200, 0);
+        Writer w = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 1 << 16);
+        JsonWriter json = new JsonWriter(w);
+        Student.Summary sum = new Student.Summary();
+        json.beginArray();
+        for (Student s : registry.students()) {
+            s.summarize(sum);
+            json.beginObject().name("name").value(sum.name).name("subjects").value(sum.subjects);
+            if (sum.graded) {
+                json.name("overallAverage").value(sum.overall).name("weightedAverage").value(sum.weighted)
+                        .name("highest").value(sum.highest).name("lowest").value(sum.lowest);
+            } else {
+                json.name("overallAverage").nullValue().name("weightedAverage").nullValue()
+                        .name("highest").nullValue().name("lowest").nullValue();
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    private void writeStudent(JsonWriter json, Student s) throws IOException {
+        Student.Summary sum = new Student.Summary();
+        s.summarize(sum);
+        List<Student.SubjectRow> rows = s.subjectRows();
+        json.beginObject().name("name").value(sum.name);
+        if (sum.graded) json.name("overallAverage").value(sum.overall).name("weightedAverage").value(sum.weighted);
+        else json.name("overallAverage").nullValue().name("weightedAverage").nullValue();
+        int rank = analytics.rankOf(s);
+        if (rank > 0) json.name("rank").value(rank).name("rankedCount").value(analytics.getRankedCount());
+        json.name("subjects").beginArray();
+        for (Student.SubjectRow row : rows) {
+            json.beginObject().name("subject").value(row.subject).name("weight").value(row.weight)
+                    .name("count").value(row.grades.size()).name("average").value(row.average)
+                    .name("highest").value(row.highest).name("lowest").value(row.lowest)
+                    .name("grades").beginArray();
+            for (int i = 0; i < row.grades.size(); i++) json.value(row.grades.get(i));
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeStats(JsonWriter json, CohortAnalytics.SubjectStats s, boolean histogram) throws IOException {
+        json.beginObject().name("subject").value(s.subject).name("count").value(s.count)
+                .name("mean").value(s.mean).name("median").value(s.median)
+                .name("p10").value(s.p10).name("p90").value(s.p90)
+                .name("min").value(s.min).name("max").value(s.max);
+        if (histogram) {
+            json.name("histogram").beginArray();
+            for (int grade = 0; grade <= 100; grade++) json.value(s.countOf(grade));
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    private static void writeError(JsonWriter json, String message) throws IOException {
+        json.beginObject().name("error").value(message).endObject();
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(w);
+        writeError(json, message);
+        json.flush();
+        send(ex, status, buf.toByteArray());
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        setJsonHeaders(ex);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void setJsonHeaders(HttpExchange ex) {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+    }
+
+    // Path segments are percent-decoded; '+' is kept as a literal plus.
+    private static String decode(String segment) {
+        return URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "grade-http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
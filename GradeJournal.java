@@ -0,0 +1,485 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only journal of grade edits on top of a binary snapshot (GradebookSnapshot).
+// Each edit is one framed record (int length, int crc32, payload) appended to <snapshot>.journal.
+// A background thread writes pending records and fsyncs them in groups, so an edit costs O(1)
+// instead of a full rewrite. compact() folds the journal back into a fresh snapshot.
+//
+// The journal header records the length and CRC32 of the snapshot it extends. Compaction writes
+// the new snapshot and a new empty journal to temporary files and renames the snapshot first:
+// after a crash between the two renames the old journal no longer matches and is ignored.
+public class GradeJournal implements Closeable {
+    public static final String SUFFIX = ".journal";
+    public static final int COMPACT_THRESHOLD = 100_000;
+
+    private static final byte[] MAGIC = { 'G', 'T', 'J', 'L' };
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 8 + 4;
+    private static final long GROUP_COMMIT_NANOS = 5_000_000L;
+
+    private static final int ADD_STUDENT = 1;
+    private static final int ADD_GRADE = 2;
+    private static final int SET_WEIGHT = 3;
+    private static final int REMOVE_STUDENT = 4;
+
+    private final Path snapshot;
+    private final Object lock = new Object();
+    private final Thread flusher;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(1 << 12);
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream(1 << 12);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+    private final CRC32 crc = new CRC32();
+    private long appendedSeq;
+    private long durableSeq;
+    private long records;
+    private boolean flushing;
+    private boolean compacting;
+    private boolean closed;
+    private IOException failure;
+
+    private GradeJournal(Path snapshot, FileChannel channel, long records) {
+        this.snapshot = snapshot;
+        this.channel = channel;
+        this.records = records;
+        this.flusher = new Thread(this::flushLoop, "grade-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static Path journalPath(Path snapshot) {
+        return Paths.get(snapshot.toString() + SUFFIX);
+    }
+
+    // Loads the snapshot (if any) into students, keyed by lower-cased name, replays every journaled
+    // edit on top of it and returns the journal positioned for further appends.
+    public static GradeJournal open(Path snapshot, Map<String, Student> students) throws IOException {
+        Replayed r = load(snapshot, students);
+        Path jp = journalPath(snapshot);
+        FileChannel ch;
+        if (r.journalEnd >= 0) {
+            ch = FileChannel.open(jp, StandardOpenOption.WRITE);
+            if (r.journalEnd < ch.size()) {
+                ch.truncate(r.journalEnd);
+                ch.force(true);
+            }
+            ch.position(r.journalEnd);
+        } else {
+            writeEmptyJournal(jp, r.baseLength, r.baseCrc);
+            ch = FileChannel.open(jp, StandardOpenOption.WRITE);
+            ch.position(HEADER_SIZE);
+        }
+        return new GradeJournal(snapshot, ch, r.records);
+    }
+
+    // Same as open, but read-only: nothing is created, truncated or left open.
+    public static void replay(Path snapshot, Map<String, Student> students) throws IOException {
+        load(snapshot, students);
+    }
+
+    private static final class Replayed {
+        long baseLength;
+        int baseCrc;
+        long journalEnd = -1;  // end of the last good record, or -1 if there is no usable journal
+        long records;
+    }
+
+    private static Replayed load(Path snapshot, Map<String, Student> students) throws IOException {
+        Replayed r = new Replayed();
+        CRC32 base = new CRC32();
+        if (Files.exists(snapshot)) {
+            try (CheckedInputStream in = new CheckedInputStream(Files.newInputStream(snapshot), base)) {
+                for (Student s : GradebookSnapshot.read(in)) students.put(s.getKey(), s);
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            r.baseLength = Files.size(snapshot);
+        }
+        r.baseCrc = (int) base.getValue();
+        Path jp = journalPath(snapshot);
+        if (Files.exists(jp) && matchesBase(jp, r.baseLength, r.baseCrc)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(jp));
+            buf.position(HEADER_SIZE);
+            r.journalEnd = HEADER_SIZE;
+            Replay replay = new Replay(students);
+            while (true) {
+                int payload = readRecord(buf);
+                if (payload < 0) break;
+                replay.apply(buf, payload);
+                r.journalEnd = buf.position();
+                r.records++;
+            }
+        }
+        return r;
+    }
+
+    // Writes students as a new snapshot with an empty journal and returns the journal.
+    public static GradeJournal create(Path snapshot, Collection<Student> students) throws IOException {
+        FileChannel ch = rewrite(snapshot, students);
+        return new GradeJournal(snapshot, ch, 0);
+    }
+
+    public Path getSnapshot() { return snapshot; }
+
+    public interface Append { void to(GradeJournal journal) throws IOException; }
+
+    // Applies an edit and appends its record as one step with respect to compact(): a compaction
+    // never starts between the two, so its snapshot holds the edit exactly when the journal it
+    // replaces holds the record. The record is appended only if apply returns true. apply runs
+    // under the journal's lock and waits while a compaction runs.
+    public boolean edit(BooleanSupplier apply, Append append) throws IOException {
+        synchronized (lock) {
+            awaitCompaction();
+            if (!apply.getAsBoolean()) return false;
+            append.to(this);
+            return true;
+        }
+    }
+
+    public void addStudent(String name) throws IOException {
+        synchronized (lock) {
+            begin(ADD_STUDENT);
+            writeString(name);
+            end();
+        }
+    }
+
+    public void addGrade(String name, String subject, int grade) throws IOException {
+        synchronized (lock) {
+            begin(ADD_GRADE);
+            writeString(name);
+            writeString(subject);
+            record.write(grade);
+            end();
+        }
+    }
+
+    public void setWeight(String name, String subject, double weight) throws IOException {
+        synchronized (lock) {
+            begin(SET_WEIGHT);
+            writeString(name);
+            writeString(subject);
+            long bits = Double.doubleToRawLongBits(weight);
+            for (int shift = 56; shift >= 0; shift -= 8) record.write((int) (bits >>> shift));
+            end();
+        }
+    }
+
+    public void removeStudent(String name) throws IOException {
+        synchronized (lock) {
+            begin(REMOVE_STUDENT);
+            writeString(name);
+            end();
+        }
+    }
+
+    public long getRecordCount() {
+        synchronized (lock) { return records; }
+    }
+
+    public boolean needsCompaction() { return getRecordCount() >= COMPACT_THRESHOLD; }
+
+    // Blocks until every record appended so far has been written and fsynced.
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = appendedSeq;
+            lock.notifyAll();
+            while (durableSeq < target && failure == null) {
+                try { lock.wait(); } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while syncing journal", e);
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    // Rewrites the snapshot from students and starts a new, empty journal. students must reflect
+    // every record appended before the call, which holds for the live students when every edit
+    // goes through edit(). Edits and appends wait from the moment compaction starts until it has
+    // finished and then go to the new journal, so no record ends up both in the snapshot and
+    // after it; the records appended before are made durable first, so a failed compaction
+    // leaves the old snapshot and journal complete.
+    public void compact(Collection<Student> students) throws IOException {
+        synchronized (lock) {
+            awaitCompaction();
+            compacting = true;
+        }
+        try {
+            sync();
+            synchronized (lock) {
+                while (flushing || pending.size() > 0) waitForLock("Interrupted while compacting journal");
+            }
+            FileChannel next = rewrite(snapshot, students);
+            synchronized (lock) {
+                channel.close();
+                channel = next;
+                records = 0;
+            }
+        } finally {
+            synchronized (lock) {
+                compacting = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Caller holds lock.
+    private void awaitCompaction() throws IOException {
+        while (compacting) waitForLock("Interrupted while waiting for journal compaction");
+    }
+
+    // Caller holds lock.
+    private void waitForLock(String interrupted) throws IOException {
+        try { lock.wait(); } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(interrupted, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (lock) { awaitCompaction(); }
+            sync();
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            try { flusher.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            channel.close();
+        }
+    }
+
+    private void begin(int type) throws IOException {
+        awaitCompaction();
+        if (closed) throw new IOException("Journal is closed");
+        if (failure != null) throw failure;
+        record.reset();
+        record.write(type);
+    }
+
+    private void writeString(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int v = utf8.length;
+        while ((v & ~0x7F) != 0) {
+            record.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        record.write(v);
+        record.write(utf8, 0, utf8.length);
+    }
+
+    private void end() {
+        crc.reset();
+        byte[] payload = record.toByteArray();
+        crc.update(payload, 0, payload.length);
+        writeInt(pending, payload.length);
+        writeInt(pending, (int) crc.getValue());
+        pending.write(payload, 0, payload.length);
+        appendedSeq++;
+        records++;
+        lock.notifyAll();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long seq;
+            FileChannel ch;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try { lock.wait(); } catch (InterruptedException e) { return; }
+                }
+                if (pending.size() == 0) return;
+                // Group commit: give concurrent edits a moment to join this fsync.
+                long deadline = System.nanoTime() + GROUP_COMMIT_NANOS;
+                long left;
+                while (!closed && (left = deadline - System.nanoTime()) > 0) {
+                    try { lock.wait(left / 1_000_000L, (int) (left % 1_000_000L)); } catch (InterruptedException e) { return; }
+                }
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                seq = appendedSeq;
+                ch = channel;
+                flushing = true;
+            }
+            IOException error = null;
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(batch.toByteArray());
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                batch.reset();
+                flushing = false;
+                if (error != null) failure = error;
+                else durableSeq = seq;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static FileChannel rewrite(Path snapshot, Collection<Student> students) throws IOException {
+        Path dir = snapshot.toAbsolutePath().getParent();
+        Path snapTmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+        Path journalTmp = Files.createTempFile(dir, snapshot.getFileName().toString(), SUFFIX + ".tmp");
+        try {
+            CRC32 base = new CRC32();
+            try (FileChannel out = FileChannel.open(snapTmp, StandardOpenOption.WRITE);
+                 CheckedOutputStream cos = new CheckedOutputStream(Channels.newOutputStream(out), base)) {
+                GradebookSnapshot.write(cos, new ArrayList<>(students));
+                out.force(true);
+            }
+            writeEmptyJournal(journalTmp, Files.size(snapTmp), (int) base.getValue());
+            Files.move(snapTmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Path jp = journalPath(snapshot);
+            Files.move(journalTmp, jp, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileChannel ch = FileChannel.open(jp, StandardOpenOption.WRITE);
+            ch.position(HEADER_SIZE);
+            return ch;
+        } finally {
+            Files.deleteIfExists(snapTmp);
+            Files.deleteIfExists(journalTmp);
+        }
+    }
+
+    private static void writeEmptyJournal(Path file, long baseLength, int baseCrc) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).putLong(baseLength).putInt(baseCrc).flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        }
+    }
+
+    private static boolean matchesBase(Path journal, long baseLength, int baseCrc) throws IOException {
+        if (Files.size(journal) < HEADER_SIZE) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (InputStream in = Files.newInputStream(journal)) {
+            if (in.readNBytes(header.array(), 0, HEADER_SIZE) < HEADER_SIZE) return false;
+        }
+        for (byte m : MAGIC) {
+            if (header.get() != m) return false;
+        }
+        return header.get() == VERSION && header.getLong() == baseLength && header.getInt() == baseCrc;
+    }
+
+    // Returns the payload length with buf positioned at the payload, or -1 at the end of the
+    // journal or at a torn or corrupt tail.
+    private static int readRecord(ByteBuffer buf) {
+        if (buf.remaining() < 8) return -1;
+        int start = buf.position();
+        int len = buf.getInt();
+        int expected = buf.getInt();
+        if (len <= 0 || len > buf.remaining()) { buf.position(start); return -1; }
+        CRC32 c = new CRC32();
+        c.update(buf.array(), buf.position(), len);
+        if ((int) c.getValue() != expected) { buf.position(start); return -1; }
+        return len;
+    }
+
+    // Applies records to the roster being loaded. A journal names the same few students over and
+    // over, so each exact name is mapped to its student and the key is derived only for a name not
+    // seen before; after that the student's cached key is used. A mapping whose student has since
+    // been removed is found stale by that key and dropped.
+    private static final class Replay {
+        private final Map<String, Student> students;
+        private final Map<String, Student> byName = new HashMap<>();
+
+        Replay(Map<String, Student> students) { this.students = students; }
+
+        void apply(ByteBuffer buf, int len) {
+            int end = buf.position() + len;
+            int type = buf.get();
+            String name = readString(buf);
+            switch (type) {
+                case ADD_STUDENT:
+                    studentFor(name);
+                    break;
+                case ADD_GRADE: {
+                    String subject = readString(buf);
+                    int grade = buf.get();
+                    studentFor(name).addGrade(subject, grade);
+                    break;
+                }
+                case SET_WEIGHT: {
+                    String subject = readString(buf);
+                    double weight = buf.getDouble();
+                    studentFor(name).setSubjectWeight(subject, weight);
+                    break;
+                }
+                case REMOVE_STUDENT: {
+                    Student s = find(name);
+                    if (s != null) students.remove(s.getKey());
+                    break;
+                }
+                default:
+                    break;
+            }
+            buf.position(end);
+        }
+
+        private Student find(String name) {
+            Student s = byName.get(name);
+            if (s != null && students.get(s.getKey()) == s) return s;
+            s = students.get(StudentRegistry.keyOf(name));
+            if (s != null) byName.put(name, s);
+            else byName.remove(name);
+            return s;
+        }
+
+        private Student studentFor(String name) {
+            Student s = find(name);
+            if (s == null) {
+                s = new Student(name);
+                students.put(s.getKey(), s);
+                byName.put(name, s);
+            }
+            return s;
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buf.get();
+            len |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        String s = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+}
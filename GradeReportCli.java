@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// Headless entry point: loads gradebooks and writes the same summary CSV as the GUI's Export,
+// without touching AWT or Swing, so it can run on servers and from cron.
+//
+//   java GradeReportCli [-o summary.csv] [-threads N] [-weights overwrite|keep|max] gradebook.csv|gradebook.gtb|gradebook.gseg ...
+//
+// Files are merged in the order given, as successive Loads in the GUI would merge them: grades
+// are appended and, by default, later weights win (-weights keep keeps the first, max the
+// largest). CSV files are parsed in parallel chunks, the loaded files are combined per student
+// on the same pool, and summary rows are computed there too. Without -o the summary goes to
+// standard output.
+public class GradeReportCli {
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Student.WeightConflictPolicy weights = Student.WeightConflictPolicy.OVERWRITE;
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("-o") && i + 1 < args.length) output = Paths.get(args[++i]);
+                else if (a.equals("-threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                else if (a.equals("-weights") && i + 1 < args.length) weights = weightPolicy(args[++i]);
+                else if (a.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + a);
+                else inputs.add(Paths.get(a));
+            }
+            if (inputs.isEmpty()) throw new IllegalArgumentException("No input files");
+            if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: java GradeReportCli [-o summary.csv] [-threads N] [-weights overwrite|keep|max] gradebook.csv|gradebook.gtb|gradebook.gseg ...");
+            System.exit(2);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Student> students = load(inputs, pool, weights);
+            long loaded = System.nanoTime();
+            SummaryExporter exporter = new SummaryExporter(pool);
+            if (output != null) {
+                exporter.export(students, output, null);
+            } else {
+                exporter.export(students, System.out, null);
+            }
+            long done = System.nanoTime();
+            System.err.printf("Loaded %d students from %d file(s) in %d ms, wrote summary in %d ms%n",
+                    students.size(), inputs.size(), (loaded - start) / 1_000_000, (done - loaded) / 1_000_000);
+            long malformed = Metrics.counter("csv.load.errors").sum();
+            if (malformed > 0) System.err.printf("Skipped %d malformed values%n", malformed);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static Student.WeightConflictPolicy weightPolicy(String name) {
+        switch (name) {
+            case "overwrite": return Student.WeightConflictPolicy.OVERWRITE;
+            case "keep": return Student.WeightConflictPolicy.KEEP_EXISTING;
+            case "max": return Student.WeightConflictPolicy.MAX;
+            default: throw new IllegalArgumentException("Unknown weight policy: " + name);
+        }
+    }
+
+    // Merged roster in first-seen order.
+    static List<Student> load(List<Path> inputs, ForkJoinPool pool, Student.WeightConflictPolicy weights) throws IOException {
+        StudentRegistry registry = new StudentRegistry();
+        List<Student> order = new ArrayList<>();
+        registry.addListener(new StudentRegistry.Listener() {
+            @Override public void studentAdded(Student s) { order.add(s); }
+        });
+        load(inputs, pool, registry, weights);
+        return order;
+    }
+
+    // Merges the files into the registry as if one after another in the order given. Each file is
+    // loaded in full first and the merge itself is StudentRegistry.mergeAll.
+    static void load(List<Path> inputs, ForkJoinPool pool, StudentRegistry registry, Student.WeightConflictPolicy weights) throws IOException {
+        List<Collection<Student>> rosters = new ArrayList<>(inputs.size());
+        for (Path p : inputs) {
+            if (!Files.exists(p)) throw new IOException("No such file: " + p);
+            if (p.toString().toLowerCase().endsWith("." + GradebookSnapshot.EXTENSION)) {
+                Map<String, Student> replayed = new LinkedHashMap<>();
+                GradeJournal.replay(p, replayed);
+                rosters.add(replayed.values());
+            } else if (p.toString().toLowerCase().endsWith("." + SegmentedStore.EXTENSION)) {
+                Map<String, Student> stored = new LinkedHashMap<>();
+                SegmentedStore.open(p, stored);
+                rosters.add(stored.values());
+            } else {
+                rosters.add(new ParallelCsvLoader(pool, ParallelCsvLoader.DEFAULT_CHUNK_SIZE).load(p).values());
+            }
+        }
+        registry.mergeAll(rosters, weights, pool);
+    }
+}
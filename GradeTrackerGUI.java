@@ -1,29 +1,81 @@
 // GradeTrackerGUI.java (ASCII-only, fixed strings and no emoji)
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
-import java.io.BufferedWriter;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.nio.file.Files;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.List;
-import java.util.OptionalInt;
 import java.util.OptionalDouble;
 
 public class GradeTrackerGUI {
     private JFrame frame;
-    private DefaultListModel<String> studentListModel;
+    private StudentListModel studentListModel;
     private JList<String> studentList;
-    private Map<String, Student> students;
-    private JTextArea detailsArea;
+    private final StudentRegistry registry = new StudentRegistry();
+    private final CohortAnalytics analytics = CohortAnalytics.attach(registry);
+    private final RosterIndex rosterIndex = RosterIndex.attach(registry);
+    private JTextField filterField;
+    private javax.swing.Timer filterTimer;
+    private volatile RosterIndex.Query activeFilter;
+    private final AtomicBoolean filterStale = new AtomicBoolean();
+    private JDialog analyticsDialog;
+    private JDialog diagnosticsDialog;
+    private EdtWatchdog edtWatchdog;
+    private JLabel detailsHeader;
+    private final SubjectRowsModel detailsModel = new SubjectRowsModel();
+    private JTable detailsTable;
+    private JLabel gradesHeader;
+    private final SubjectGradesModel gradesModel = new SubjectGradesModel();
+    private JList<String> gradesList;
     private JLabel statusBar;
     private boolean darkTheme = false;
     private ChartPanel chartPanel;
+    private GradeJournal journal;
+    // Store behind the last segmented save or load; saving to it again writes only what changed.
+    private SegmentedStore segmentedStore;
+    private GradeHttpServer httpServer;
+    private JPanel taskPanel;
+    private JProgressBar progressBar;
+    private JButton cancelBtn;
+    private final List<JButton> taskButtons = new ArrayList<>();
+    private final List<JButton> editButtons = new ArrayList<>();
+    private BackgroundTask<?, ?> activeTask;
+    private static final int PUBLISH_BATCH = 4096;
+    private static final String NO_SUBJECT = " Select a subject to list all of its grades";
+    private static final Metrics.Histogram DETAILS_LATENCY = Metrics.histogram("gui.details.render");
+    // Roster changes made on any thread, applied to the list model in batches on the EDT.
+    private final Queue<RosterEvent> rosterEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean detailsStale = new AtomicBoolean();
+    private volatile Student shownStudent;
+    // An edit reached the roster but not the journal; cleared once the whole roster is saved.
+    private boolean unsaved;
 
     public GradeTrackerGUI() {
-        students = new HashMap<>();
+        registry.addListener(new StudentRegistry.Listener() {
+            @Override public void studentAdded(Student s) { postRosterEvent(new RosterEvent(s, false)); }
+            @Override public void studentRemoved(Student s) { postRosterEvent(new RosterEvent(s, true)); }
+            @Override public void studentChanged(Student s) {
+                if (s == shownStudent && !detailsStale.getAndSet(true)) postRosterEvent(null);
+                // Grade edits can move students in or out of a subject or range filter.
+                RosterIndex.Query filter = activeFilter;
+                if (filter != null && filter.readsGrades() && !filterStale.getAndSet(true)) postRosterEvent(null);
+            }
+        });
         initUI();
+        startHttpServer();
+        Metrics.registerMBean();
+        edtWatchdog = EdtWatchdog.start();
     }
 
     private void initUI() {
@@ -31,29 +83,90 @@ public class GradeTrackerGUI {
 
         frame = new JFrame("Student Grade Tracker");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override public void windowClosing(java.awt.event.WindowEvent e) {
+                if (httpServer != null) httpServer.stop();
+                if (edtWatchdog != null) edtWatchdog.stop();
+                closeJournal();
+            }
+        });
         frame.setSize(1000, 660);
         frame.setLayout(new BorderLayout());
 
-        studentListModel = new DefaultListModel<>();
+        studentListModel = new StudentListModel();
         studentList = new JList<>(studentListModel);
         studentList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         studentList.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         studentList.setCellRenderer(new StudentCellRenderer());
+        // A prototype row lets JList size cells without rendering every student in large rosters.
+        studentList.setPrototypeCellValue("Student name placeholder");
         JScrollPane leftScroll = new JScrollPane(studentList);
-        leftScroll.setPreferredSize(new Dimension(260, 0));
-        frame.add(leftScroll, BorderLayout.WEST);
+        filterField = new JTextField();
+        filterField.setToolTipText("<html>Filter by name prefix, subject and weighted average, e.g.<br>"
+                + "<tt>ann subject:math weighted&lt;60</tt><br>Esc clears the filter.</html>");
+        // Filter once typing pauses rather than on every keystroke.
+        filterTimer = new javax.swing.Timer(120, e -> applyFilter());
+        filterTimer.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { filterTimer.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { filterTimer.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { filterTimer.restart(); }
+        });
+        filterField.addActionListener(e -> { filterTimer.stop(); applyFilter(); });
+        filterField.registerKeyboardAction(e -> filterField.setText(""),
+                KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_FOCUSED);
+        JPanel filterPanel = new JPanel(new BorderLayout(6, 0));
+        filterPanel.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        filterPanel.setOpaque(false);
+        filterPanel.add(new JLabel("Find"), BorderLayout.WEST);
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        JPanel left = new JPanel(new BorderLayout());
+        left.setOpaque(false);
+        left.setPreferredSize(new Dimension(260, 0));
+        left.add(filterPanel, BorderLayout.NORTH);
+        left.add(leftScroll, BorderLayout.CENTER);
+        frame.add(left, BorderLayout.WEST);
+
+        // One table row per subject: JTable only asks for the cells it paints, so a student with
+        // thousands of grades or subjects costs what fits on screen.
+        detailsHeader = new JLabel(" ");
+        detailsHeader.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        detailsHeader.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
+        detailsHeader.setOpaque(true);
+        detailsTable = new JTable(detailsModel);
+        detailsTable.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        detailsTable.setRowHeight(22);
+        detailsTable.setFillsViewportHeight(true);
+        detailsTable.setAutoCreateRowSorter(true);
+        detailsTable.getColumnModel().getColumn(0).setPreferredWidth(140);
+        detailsTable.getColumnModel().getColumn(6).setPreferredWidth(320);
+        detailsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        detailsTable.getSelectionModel().addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) showSelectedSubjectGrades(); });
 
-        detailsArea = new JTextArea();
-        detailsArea.setEditable(false);
-        detailsArea.setFont(new Font("Monospaced", Font.PLAIN, 13));
-        detailsArea.setBackground(new Color(250, 250, 252));
-        detailsArea.setMargin(new Insets(10,10,10,10));
+        // Every grade of the subject selected above. Fixed cell sizes keep JList from measuring
+        // rows it does not paint, so a subject's whole history scrolls at the cost of one screen.
+        gradesHeader = new JLabel(NO_SUBJECT);
+        gradesHeader.setBorder(BorderFactory.createEmptyBorder(4,10,4,10));
+        gradesList = new JList<>(gradesModel);
+        gradesList.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        gradesList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        gradesList.setVisibleRowCount(-1);
+        gradesList.setFixedCellWidth(110);
+        gradesList.setFixedCellHeight(20);
+        JPanel gradesPanel = new JPanel(new BorderLayout());
+        gradesPanel.add(gradesHeader, BorderLayout.NORTH);
+        gradesPanel.add(new JScrollPane(gradesList), BorderLayout.CENTER);
 
         chartPanel = new ChartPanel();
         chartPanel.setPreferredSize(new Dimension(320, 0));
 
         JPanel center = new JPanel(new BorderLayout());
-        center.add(new JScrollPane(detailsArea), BorderLayout.CENTER);
+        JPanel details = new JPanel(new BorderLayout());
+        details.add(detailsHeader, BorderLayout.NORTH);
+        JSplitPane detailsSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(detailsTable), gradesPanel);
+        detailsSplit.setResizeWeight(0.7);
+        details.add(detailsSplit, BorderLayout.CENTER);
+        center.add(details, BorderLayout.CENTER);
         center.add(chartPanel, BorderLayout.EAST);
         frame.add(center, BorderLayout.CENTER);
 
@@ -68,7 +181,12 @@ public class GradeTrackerGUI {
         JButton saveBtn = makeToolbarButton("Save");
         JButton loadBtn = makeToolbarButton("Load");
         JButton exportSummaryBtn = makeToolbarButton("Export");
+        JButton analyticsBtn = makeToolbarButton("Analytics");
+        JButton diagnosticsBtn = makeToolbarButton("Diagnostics");
         JButton themeToggleBtn = makeToolbarButton("Toggle Theme");
+        JComboBox<String> sortBox = new JComboBox<>(new String[] { "Sort: Added", "Sort: Name", "Sort: Weighted avg" });
+        sortBox.setMaximumSize(new Dimension(160, 28));
+        sortBox.setFocusable(false);
 
         toolbar.add(addStudentBtn);
         toolbar.add(addGradeBtn);
@@ -78,14 +196,35 @@ public class GradeTrackerGUI {
         toolbar.add(saveBtn);
         toolbar.add(loadBtn);
         toolbar.add(exportSummaryBtn);
+        toolbar.add(analyticsBtn);
+        toolbar.add(diagnosticsBtn);
         toolbar.addSeparator(new Dimension(12,0));
         toolbar.add(themeToggleBtn);
+        toolbar.addSeparator(new Dimension(12,0));
+        toolbar.add(sortBox);
 
         frame.add(toolbar, BorderLayout.NORTH);
 
         statusBar = new JLabel(" Ready");
         statusBar.setBorder(BorderFactory.createEmptyBorder(6,10,6,10));
-        frame.add(statusBar, BorderLayout.SOUTH);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setPreferredSize(new Dimension(160, 18));
+        cancelBtn = new JButton("Cancel");
+        cancelBtn.setFocusPainted(false);
+        cancelBtn.addActionListener(e -> { if (activeTask != null) activeTask.requestCancel(); });
+        taskPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 2));
+        taskPanel.setOpaque(false);
+        taskPanel.add(progressBar);
+        taskPanel.add(cancelBtn);
+        taskPanel.setVisible(false);
+        JPanel south = new JPanel(new BorderLayout());
+        south.setOpaque(false);
+        south.add(statusBar, BorderLayout.CENTER);
+        south.add(taskPanel, BorderLayout.EAST);
+        frame.add(south, BorderLayout.SOUTH);
+        taskButtons.addAll(Arrays.asList(saveBtn, loadBtn, exportSummaryBtn));
+        editButtons.addAll(Arrays.asList(addStudentBtn, addGradeBtn, setWeightBtn, removeBtn));
 
         addStudentBtn.addActionListener(e -> onAddStudent());
         addGradeBtn.addActionListener(e -> onAddGrade());
@@ -94,7 +233,10 @@ public class GradeTrackerGUI {
         saveBtn.addActionListener(e -> onSaveCsv());
         loadBtn.addActionListener(e -> onLoadCsv());
         exportSummaryBtn.addActionListener(e -> onExportSummary());
+        analyticsBtn.addActionListener(e -> onShowAnalytics());
+        diagnosticsBtn.addActionListener(e -> onShowDiagnostics());
         themeToggleBtn.addActionListener(e -> toggleTheme());
+        sortBox.addActionListener(e -> onSortChanged(sortBox.getSelectedIndex()));
 
         studentList.addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) showSelectedStudentDetails(); });
 
@@ -103,6 +245,18 @@ public class GradeTrackerGUI {
         frame.setVisible(true);
     }
 
+    // Serves the live roster to local tools when -Dgradetracker.http.port is set.
+    private void startHttpServer() {
+        String port = System.getProperty(GradeHttpServer.PORT_PROPERTY);
+        if (port == null) return;
+        try {
+            httpServer = GradeHttpServer.start(registry, analytics, Integer.parseInt(port.trim()));
+            statusBar.setText(" Serving JSON on http://localhost:" + httpServer.getPort() + "/");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(frame, "Failed to start HTTP server on port " + port + ": " + ex.getMessage());
+        }
+    }
+
     private JButton makeToolbarButton(String text) {
         JButton b = new JButton(text);
         b.setFocusPainted(false);
@@ -118,11 +272,11 @@ public class GradeTrackerGUI {
         if (name == null) return;
         name = name.trim();
         if (name.isEmpty()) { JOptionPane.showMessageDialog(frame, "Name cannot be empty."); return; }
-        String key = name.toLowerCase();
-        if (students.containsKey(key)) { JOptionPane.showMessageDialog(frame, "Student already exists."); return; }
-        Student s = new Student(name);
-        students.put(key, s);
-        studentListModel.addElement(name);
+        String added = name;
+        if (!edit(() -> registry.addStudent(added) != null, j -> j.addStudent(added))) {
+            JOptionPane.showMessageDialog(frame, "Student already exists.");
+            return;
+        }
         statusBar.setText(" Added student: " + name);
     }
 
@@ -136,8 +290,8 @@ public class GradeTrackerGUI {
         try {
             int g = Integer.parseInt(gradeStr.trim());
             if (g < 0 || g > 100) throw new NumberFormatException();
-            Student s = students.get(name.toLowerCase());
-            s.addGrade(subject, g);
+            String subj = subject;
+            edit(() -> { registry.addGrade(name, subj, g); return true; }, j -> j.addGrade(name, subj, g));
             showSelectedStudentDetails();
             statusBar.setText(" Added grade " + g + " to " + name + " (" + subject + ")");
         } catch (NumberFormatException ex) {
@@ -155,8 +309,8 @@ public class GradeTrackerGUI {
         try {
             double w = Double.parseDouble(wStr.trim());
             if (w <= 0) throw new NumberFormatException();
-            Student s = students.get(name.toLowerCase());
-            s.setSubjectWeight(subject, w);
+            String subj = subject;
+            edit(() -> { registry.setSubjectWeight(name, subj, w); return true; }, j -> j.setWeight(name, subj, w));
             showSelectedStudentDetails();
             statusBar.setText(" Set weight " + w + " for " + subject + " (" + name + ")");
         } catch (NumberFormatException ex) {
@@ -169,56 +323,397 @@ public class GradeTrackerGUI {
         if (name == null) { JOptionPane.showMessageDialog(frame, "Select a student first."); return; }
         int confirm = JOptionPane.showConfirmDialog(frame, "Remove " + name + "?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            students.remove(name.toLowerCase());
-            studentListModel.removeElement(name);
-            detailsArea.setText("");
-            chartPanel.setStudent(null);
+            edit(() -> { registry.removeStudent(name); return true; }, j -> j.removeStudent(name));
+            studentList.clearSelection();
             statusBar.setText(" Removed student: " + name);
         }
     }
 
+    private void onShowAnalytics() {
+        if (analyticsDialog == null) {
+            analyticsDialog = new JDialog(frame, "Class Analytics", false);
+            analyticsDialog.add(new AnalyticsPanel(registry, analytics));
+            analyticsDialog.setSize(820, 520);
+            analyticsDialog.setLocationRelativeTo(frame);
+        }
+        analyticsDialog.setVisible(true);
+        analyticsDialog.toFront();
+    }
+
+    private void onShowDiagnostics() {
+        if (diagnosticsDialog == null) {
+            diagnosticsDialog = new JDialog(frame, "Diagnostics", false);
+            diagnosticsDialog.add(new DiagnosticsPanel());
+            diagnosticsDialog.setSize(720, 560);
+            diagnosticsDialog.setLocationRelativeTo(frame);
+        }
+        diagnosticsDialog.setVisible(true);
+        diagnosticsDialog.toFront();
+    }
+
+    private void onSortChanged(int mode) {
+        int selected = studentList.getSelectedIndex();
+        String key = selected < 0 ? null : studentListModel.getKeyAt(selected);
+        if (mode == 1) studentListModel.sortByName();
+        else if (mode == 2) studentListModel.sortByValue(k -> {
+            Student s = registry.getByKey(k);
+            return s == null ? -1.0 : s.getWeightedAverage().orElse(-1.0);
+        }, true);
+        else studentListModel.sortByInsertion();
+        if (key != null) {
+            int index = studentListModel.indexOfKey(key);
+            studentList.setSelectedIndex(index);
+            studentList.ensureIndexIsVisible(index);
+        }
+    }
+
+    // Answers the query from the roster index and shows only the matching students, keeping the
+    // selection if it still matches.
+    private void applyFilter() {
+        long start = System.nanoTime();
+        filterStale.set(false);
+        RosterIndex.Query query = rosterIndex.compile(filterField.getText());
+        activeFilter = query.isEmpty() ? null : query;
+        int selected = studentList.getSelectedIndex();
+        String key = selected < 0 ? null : studentListModel.getKeyAt(selected);
+        if (activeFilter == null) studentListModel.setFilter(null, null);
+        else studentListModel.setFilter(query::test, query.matches());
+        int index = key == null ? -1 : studentListModel.indexOfKey(key);
+        if (index >= 0) {
+            studentList.setSelectedIndex(index);
+            studentList.ensureIndexIsVisible(index);
+        }
+        if (activeFilter != null) {
+            statusBar.setText(String.format(" %d of %d students match (%.1f ms)", studentListModel.getSize(),
+                    studentListModel.getTotalSize(), (System.nanoTime() - start) / 1e6));
+        }
+    }
+
     private void onSaveCsv() {
         JFileChooser fc = new JFileChooser();
-        fc.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV files", "csv");
+        FileNameExtensionFilter snapshotFilter = new FileNameExtensionFilter("Gradebook snapshot", GradebookSnapshot.EXTENSION);
+        FileNameExtensionFilter segmentedFilter = new FileNameExtensionFilter("Segmented gradebook (saves only changes)", SegmentedStore.EXTENSION);
+        fc.addChoosableFileFilter(csvFilter);
+        fc.addChoosableFileFilter(snapshotFilter);
+        fc.addChoosableFileFilter(segmentedFilter);
+        fc.setFileFilter(csvFilter);
         int res = fc.showSaveDialog(frame);
         if (res != JFileChooser.APPROVE_OPTION) return;
-        Path p = fc.getSelectedFile().toPath();
-        if (!p.toString().toLowerCase().endsWith(".csv")) p = Paths.get(p.toString() + ".csv");
-        try {
-            CSVUtils.saveStudents(p, new ArrayList<>(students.values()));
-            JOptionPane.showMessageDialog(frame, "Saved to " + p);
-            statusBar.setText(" Saved CSV: " + p.getFileName());
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(frame, "Failed to save: " + ex.getMessage());
-        }
+        Path chosen = fc.getSelectedFile().toPath();
+        boolean csv = chosen.toString().toLowerCase().endsWith(".csv");
+        boolean snapshot = isSnapshot(chosen) || (fc.getFileFilter() == snapshotFilter && !csv);
+        boolean segmented = !snapshot && (isSegmented(chosen) || (fc.getFileFilter() == segmentedFilter && !csv));
+        String ext = snapshot ? "." + GradebookSnapshot.EXTENSION : segmented ? "." + SegmentedStore.EXTENSION : ".csv";
+        Path p = chosen.toString().toLowerCase().endsWith(ext) ? chosen : Paths.get(chosen.toString() + ext);
+        List<Student> all = new ArrayList<>(registry.students());
+        GradeJournal current = journal;
+        SegmentedStore currentStore = segmentedStore;
+        // A snapshot must match the journal position exactly, so edits wait for it; a CSV save does not.
+        startTask(new BackgroundTask<GradeJournal, Void>("Saving " + p.getFileName(), "students", "Failed to save: ", !snapshot, snapshot) {
+            private SegmentedStore store;
+            private SegmentedStore.Saved saved;
+
+            @Override protected GradeJournal work() throws Exception {
+                CSVUtils.Progress progress = new CSVUtils.Progress() {
+                    @Override public void update(int done, int total) { report(total == 0 ? 100 : (int) (done * 100L / total), done); }
+                    @Override public boolean isCancelled() { return isTaskCancelled(); }
+                };
+                if (segmented) {
+                    store = currentStore != null && currentStore.getIndex().equals(p) ? currentStore : SegmentedStore.open(p, new HashMap<>());
+                    saved = store.save(all, progress);
+                    return null;
+                }
+                if (!snapshot) {
+                    CSVUtils.saveStudents(p, all, progress);
+                    return null;
+                }
+                // Saving a snapshot is also a compaction: edits from here on are journaled against it.
+                if (current != null && current.getSnapshot().equals(p)) {
+                    current.compact(all);
+                    return current;
+                }
+                return GradeJournal.create(p, all);
+            }
+            @Override protected void succeeded(GradeJournal opened) {
+                if (opened != null) attachJournal(opened);
+                if (unsaved) setUnsaved(false);
+                JOptionPane.showMessageDialog(frame, "Saved to " + p);
+                if (store != null) {
+                    segmentedStore = store;
+                    statusBar.setText(String.format(" Saved segmented gradebook: %s (rewrote %d of %d segments, %d students)",
+                            p.getFileName(), saved.segmentsWritten, saved.segments, saved.studentsWritten));
+                } else {
+                    statusBar.setText(String.format(" Saved %s: %s (%d students, %.0f students/s)", snapshot ? "snapshot" : "CSV", p.getFileName(), all.size(), rate(all.size())));
+                }
+            }
+        });
     }
 
     private void onLoadCsv() {
         JFileChooser fc = new JFileChooser();
-        fc.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        fc.setFileFilter(new FileNameExtensionFilter("CSV files and gradebooks", "csv", GradebookSnapshot.EXTENSION, SegmentedStore.EXTENSION));
+        fc.setMultiSelectionEnabled(true);
         int res = fc.showOpenDialog(frame);
         if (res != JFileChooser.APPROVE_OPTION) return;
-        Path p = fc.getSelectedFile().toPath();
+        File[] files = fc.getSelectedFiles();
+        if (files.length > 1) { loadFiles(files); return; }
+        Path p = (files.length == 1 ? files[0] : fc.getSelectedFile()).toPath();
+        boolean snapshot = isSnapshot(p);
+        boolean segmented = isSegmented(p);
+        boolean merging = !registry.isEmpty();
+        Student.WeightConflictPolicy weights = merging ? askWeightPolicy() : Student.WeightConflictPolicy.OVERWRITE;
+        if (weights == null) return;
+        long size;
         try {
-            List<Student> loaded = CSVUtils.loadStudents(p);
-            for (Student s : loaded) {
-                String key = s.getName().toLowerCase();
-                if (students.containsKey(key)) {
-                    Student existing = students.get(key);
-                    for (String subj : s.getSubjects()) {
-                        for (int g : s.getGrades(subj)) existing.addGrade(subj, g);
-                        existing.setSubjectWeight(subj, s.getSubjectWeight(subj));
-                    }
+            if (snapshot && journal != null) journal.sync();
+            size = Files.exists(p) ? Files.size(p) : 0;
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(frame, "Failed to load: " + ex.getMessage());
+            return;
+        }
+        startTask(new BackgroundTask<GradeJournal, Void>("Loading " + p.getFileName(), "rows", "Failed to load: ", true, snapshot) {
+            private final CsvStreamLoader loader = new CsvStreamLoader(new CsvStreamLoader.Listener() {
+                @Override public void progress(long rows, long elapsedNanos) {
+                    report(size == 0 ? 100 : (int) Math.min(100, getCharsRead() * 100 / size), rows);
+                }
+                @Override public boolean isCancelled() { return isTaskCancelled(); }
+            });
+            private int loadedCount;
+            private SegmentedStore store;
+
+            private long getCharsRead() { return loader.getCharsRead(); }
+
+            @Override protected GradeJournal work() throws Exception {
+                List<Student> loaded;
+                GradeJournal opened = null;
+                if (snapshot) {
+                    // Into an empty roster the snapshot becomes the open gradebook and edits are
+                    // journaled to it. Merged into a roster it is only read, so the file is never
+                    // rewritten to hold students it did not have.
+                    Map<String, Student> replayed = new LinkedHashMap<>();
+                    if (merging) GradeJournal.replay(p, replayed);
+                    else opened = GradeJournal.open(p, replayed);
+                    loaded = new ArrayList<>(replayed.values());
+                } else if (segmented) {
+                    Map<String, Student> stored = new LinkedHashMap<>();
+                    store = SegmentedStore.open(p, stored, SegmentedStore.DEFAULT_SEGMENT_STUDENTS, new CSVUtils.Progress() {
+                        @Override public void update(int done, int total) { report(total == 0 ? 100 : (int) (done * 100L / total), stored.size()); }
+                        @Override public boolean isCancelled() { return isTaskCancelled(); }
+                    });
+                    loaded = new ArrayList<>(stored.values());
                 } else {
-                    students.put(key, s);
-                    studentListModel.addElement(s.getName());
+                    loaded = Files.exists(p) ? new ArrayList<>(loader.load(p).values()) : new ArrayList<>();
                 }
+                loadedCount = loaded.size();
+                if (!startCommit()) {
+                    if (opened != null) opened.close();
+                    return null;
+                }
+                // Merged straight into the registry; the list picks the new students up in batches.
+                for (int i = 0; i < loaded.size(); i += PUBLISH_BATCH) {
+                    registry.merge(loaded.subList(i, Math.min(loaded.size(), i + PUBLISH_BATCH)), weights);
+                }
+                return opened;
+            }
+            @Override protected void succeeded(GradeJournal opened) {
+                if (opened != null) attachJournal(opened);
+                if (store != null) segmentedStore = store;
+                JOptionPane.showMessageDialog(frame, "Loaded " + loadedCount + " students from " + (snapshot ? "snapshot." : segmented ? "segmented gradebook." : "CSV."));
+                if (snapshot) statusBar.setText((merging ? " Merged snapshot: " : " Loaded snapshot: ") + p.getFileName());
+                else if (segmented) statusBar.setText(String.format(" Loaded segmented gradebook: %s (%d segments)", p.getFileName(), store.getSegmentCount()));
+                else statusBar.setText(String.format(" Loaded CSV: %s (%d rows, %.0f rows/s%s)", p.getFileName(), loader.getRows(), loader.getRowsPerSecond(),
+                        loader.getParseErrors() == 0 ? "" : ", " + loader.getParseErrors() + " malformed values skipped"));
+                // Bulk merges are not journaled record by record; fold them into the open snapshot instead.
+                if (opened == null && journal != null && loadedCount > 0) startCompaction();
+            }
+        });
+    }
+
+    // Several CSV files or segmented gradebooks at once: each is parsed on its own pool thread,
+    // then the files are combined per student in parallel (StudentRegistry.combine) and merged as
+    // if loaded one after another in the order selected. Snapshots carry a journal, so they still
+    // load one at a time.
+    private void loadFiles(File[] files) {
+        List<Path> paths = new ArrayList<>(files.length);
+        long total = 0;
+        try {
+            for (File f : files) {
+                Path p = f.toPath();
+                if (isSnapshot(p)) { JOptionPane.showMessageDialog(frame, "Snapshots can only be loaded one at a time."); return; }
+                paths.add(p);
+                total += Files.exists(p) ? Files.size(p) : 0;
             }
-            JOptionPane.showMessageDialog(frame, "Loaded " + loaded.size() + " students from CSV.");
-            statusBar.setText(" Loaded CSV: " + p.getFileName());
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(frame, "Failed to load: " + ex.getMessage());
+            return;
         }
+        Student.WeightConflictPolicy weights = askWeightPolicy();
+        if (weights == null) return;
+        long size = total;
+        startTask(new BackgroundTask<Void, Void>("Loading " + paths.size() + " files", "rows", "Failed to load: ", true, false) {
+            private final List<CsvStreamLoader> loaders = new ArrayList<>();
+            private int loadedCount;
+            private long rows;
+            private long errors;
+
+            // Loaders report from their own threads; report() expects one caller at a time. The other
+            // loaders' counts are read without their thread's ordering and may lag, which a progress
+            // bar tolerates; the totals are read after their futures complete.
+            private synchronized void reportProgress() {
+                long chars = 0, n = 0;
+                for (CsvStreamLoader l : loaders) { chars += l.getCharsRead(); n += l.getRows(); }
+                report(size == 0 ? 100 : (int) Math.min(100, chars * 100 / size), n);
+            }
+
+            @Override protected Void work() throws Exception {
+                ForkJoinPool pool = ForkJoinPool.commonPool();
+                List<Future<Collection<Student>>> parsed = new ArrayList<>(paths.size());
+                for (Path p : paths) {
+                    if (isSegmented(p)) {
+                        parsed.add(pool.submit(() -> {
+                            Map<String, Student> stored = new LinkedHashMap<>();
+                            SegmentedStore.open(p, stored);
+                            return stored.values();
+                        }));
+                        continue;
+                    }
+                    CsvStreamLoader loader = new CsvStreamLoader(new CsvStreamLoader.Listener() {
+                        @Override public void progress(long rows, long elapsedNanos) { reportProgress(); }
+                        @Override public boolean isCancelled() { return isTaskCancelled(); }
+                    });
+                    synchronized (this) { loaders.add(loader); }
+                    parsed.add(pool.submit(() -> Files.exists(p) ? loader.load(p).values() : Collections.<Student>emptyList()));
+                }
+                List<Collection<Student>> rosters = new ArrayList<>(paths.size());
+                try {
+                    for (Future<Collection<Student>> f : parsed) rosters.add(f.get());
+                } catch (ExecutionException ex) {
+                    for (Future<Collection<Student>> f : parsed) f.cancel(true);
+                    if (ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+                    throw ex;
+                }
+                for (CsvStreamLoader l : loaders) { rows += l.getRows(); errors += l.getParseErrors(); }
+                List<Student> combined = registry.combine(rosters, weights, pool);
+                loadedCount = combined.size();
+                if (!startCommit()) return null;
+                for (int i = 0; i < combined.size(); i += PUBLISH_BATCH) {
+                    registry.merge(combined.subList(i, Math.min(combined.size(), i + PUBLISH_BATCH)), weights);
+                }
+                return null;
+            }
+            @Override protected void succeeded(Void result) {
+                JOptionPane.showMessageDialog(frame, "Loaded " + loadedCount + " students from " + paths.size() + " files.");
+                statusBar.setText(String.format(" Loaded %d files (%d rows, %.0f rows/s%s)", paths.size(), rows, rate(rows),
+                        errors == 0 ? "" : ", " + errors + " malformed values skipped"));
+                if (journal != null && loadedCount > 0) startCompaction();
+            }
+        });
+    }
+
+    // How to settle a subject weight both the roster and a loaded file have; null if cancelled.
+    private Student.WeightConflictPolicy askWeightPolicy() {
+        Object[] options = { "Use loaded weights", "Keep current weights", "Use the higher weight" };
+        Student.WeightConflictPolicy[] policies = {
+            Student.WeightConflictPolicy.OVERWRITE, Student.WeightConflictPolicy.KEEP_EXISTING, Student.WeightConflictPolicy.MAX };
+        int choice = JOptionPane.showOptionDialog(frame, "When a student already has a weight for a loaded subject:", "Merge weights",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        return choice < 0 ? null : policies[choice];
+    }
+
+    private static final class RosterEvent {
+        final Student student;
+        final boolean removed;
+        RosterEvent(Student student, boolean removed) { this.student = student; this.removed = removed; }
+    }
+
+    // Called from any thread; a null event only asks for the shown student to be redrawn.
+    private void postRosterEvent(RosterEvent e) {
+        if (e != null) rosterEvents.add(e);
+        if (drainScheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(this::drainRosterEvents);
+    }
+
+    private void drainRosterEvents() {
+        drainScheduled.set(false);
+        List<Student> added = new ArrayList<>();
+        RosterEvent e;
+        while ((e = rosterEvents.poll()) != null) {
+            if (!e.removed) { added.add(e.student); continue; }
+            studentListModel.addStudents(added);
+            added.clear();
+            studentListModel.removeKey(e.student.getKey());
+            if (e.student == shownStudent) studentList.clearSelection();
+        }
+        studentListModel.addStudents(added);
+        if (filterStale.get() && !filterTimer.isRunning()) filterTimer.restart();
+        if (detailsStale.getAndSet(false) && shownStudent != null) renderDetails(shownStudent);
+    }
+
+    // Applies an edit to the registry and journals it in one step (GradeJournal.edit), so a
+    // compaction cannot fall between the two. Returns whether apply made the edit. If the edit was
+    // made but its record could not be written, the journal is detached, since later records
+    // would follow a gap, and the roster is marked unsaved until it is saved or compacted.
+    private boolean edit(java.util.function.BooleanSupplier apply, GradeJournal.Append append) {
+        GradeJournal j = journal;
+        if (j == null) return apply.getAsBoolean();
+        boolean[] applied = new boolean[1];
+        try {
+            j.edit(() -> applied[0] = apply.getAsBoolean(), append);
+        } catch (java.io.IOException ex) {
+            if (!applied[0]) {
+                JOptionPane.showMessageDialog(frame, "Failed to write journal: " + ex.getMessage());
+                return false;
+            }
+            closeJournal();
+            setUnsaved(true);
+            JOptionPane.showMessageDialog(frame, "Failed to write journal: " + ex.getMessage()
+                    + "\nThe change was made but is not saved, and journaling is off. Save the roster to keep it.");
+            return true;
+        }
+        if (applied[0] && j.needsCompaction() && activeTask == null) startCompaction();
+        return applied[0];
+    }
+
+    private void setUnsaved(boolean value) {
+        unsaved = value;
+        frame.setTitle(value ? "Student Grade Tracker (unsaved changes)" : "Student Grade Tracker");
+        if (value) statusBar.setText(" Unsaved changes: the journal could not be written");
+    }
+
+    private void startCompaction() {
+        GradeJournal j = journal;
+        List<Student> all = new ArrayList<>(registry.students());
+        startTask(new BackgroundTask<Void, Void>("Compacting journal", "students", "Failed to write journal: ", false, true) {
+            @Override protected Void work() throws Exception {
+                j.compact(all);
+                return null;
+            }
+            @Override protected void succeeded(Void result) {
+                if (unsaved) setUnsaved(false);
+                statusBar.setText(" Journal compacted into " + j.getSnapshot().getFileName());
+            }
+        });
+    }
+
+    private void attachJournal(GradeJournal j) {
+        if (journal != null && journal != j) closeJournal();
+        journal = j;
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try { journal.close(); } catch (Exception ex) {
+            JOptionPane.showMessageDialog(frame, "Failed to close journal: " + ex.getMessage());
+        }
+        journal = null;
+    }
+
+    private static boolean isSnapshot(Path p) {
+        return p.toString().toLowerCase().endsWith("." + GradebookSnapshot.EXTENSION);
+    }
+
+    private static boolean isSegmented(Path p) {
+        return p.toString().toLowerCase().endsWith("." + SegmentedStore.EXTENSION);
     }
 
     private void onExportSummary() {
@@ -226,51 +721,186 @@ public class GradeTrackerGUI {
         fc.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
         int res = fc.showSaveDialog(frame);
         if (res != JFileChooser.APPROVE_OPTION) return;
-        Path p = fc.getSelectedFile().toPath();
-        if (!p.toString().toLowerCase().endsWith(".csv")) p = Paths.get(p.toString() + ".csv");
-        try (BufferedWriter bw = Files.newBufferedWriter(p)) {
-            bw.write("name,overall_avg,weighted_avg,subjects_count,highest,lowest\n");
-            for (Student s : students.values()) {
-                String name = s.getName();
-                String overall = s.getOverallAverage().isPresent() ? String.format("%.2f", s.getOverallAverage().getAsDouble()) : "-";
-                String weighted = s.getWeightedAverage().isPresent() ? String.format("%.2f", s.getWeightedAverage().getAsDouble()) : "-";
-                int subjCount = s.getSubjects().size();
-                OptionalInt highest = s.getSubjects().stream()
-                        .mapToInt(subj -> s.getSubjectHighest(subj).orElse(Integer.MIN_VALUE))
-                        .filter(v -> v != Integer.MIN_VALUE).max();
-                OptionalInt lowest = s.getSubjects().stream()
-                        .mapToInt(subj -> s.getSubjectLowest(subj).orElse(Integer.MAX_VALUE))
-                        .filter(v -> v != Integer.MAX_VALUE).min();
-                String h = highest.isPresent() ? String.valueOf(highest.getAsInt()) : "-";
-                String l = lowest.isPresent() ? String.valueOf(lowest.getAsInt()) : "-";
-                bw.write(String.format("%s,%s,%s,%d,%s,%s\n", name, overall, weighted, subjCount, h, l));
+        Path chosen = fc.getSelectedFile().toPath();
+        Path p = chosen.toString().toLowerCase().endsWith(".csv") ? chosen : Paths.get(chosen.toString() + ".csv");
+        List<Student> all = new ArrayList<>(registry.students());
+        startTask(new BackgroundTask<Void, Void>("Exporting " + p.getFileName(), "students", "Failed to export summary: ", true, false) {
+            @Override protected Void work() throws Exception {
+                new SummaryExporter().export(all, p, new CSVUtils.Progress() {
+                    @Override public void update(int done, int total) { report(total == 0 ? 100 : (int) (done * 100L / total), done); }
+                    @Override public boolean isCancelled() { return isTaskCancelled(); }
+                });
+                return null;
+            }
+            @Override protected void succeeded(Void result) {
+                JOptionPane.showMessageDialog(frame, "Summary exported to " + p);
+                statusBar.setText(String.format(" Exported summary: %s (%d students, %.0f students/s)", p.getFileName(), all.size(), rate(all.size())));
+            }
+        });
+    }
+
+    private void startTask(BackgroundTask<?, ?> task) {
+        if (activeTask != null) { JOptionPane.showMessageDialog(frame, "Another operation is still running."); return; }
+        activeTask = task;
+        for (JButton b : taskButtons) b.setEnabled(false);
+        if (task.blocksEdits) for (JButton b : editButtons) b.setEnabled(false);
+        progressBar.setValue(0);
+        cancelBtn.setEnabled(task.cancellable);
+        taskPanel.setVisible(true);
+        statusBar.setText(" " + task.label + "...");
+        task.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()) && activeTask == task) progressBar.setValue((Integer) e.getNewValue());
+        });
+        task.execute();
+    }
+
+    private void taskFinished(BackgroundTask<?, ?> task) {
+        if (activeTask != task) return;
+        activeTask = null;
+        for (JButton b : taskButtons) b.setEnabled(true);
+        for (JButton b : editButtons) b.setEnabled(true);
+        taskPanel.setVisible(false);
+    }
+
+    // File work that runs on a SwingWorker thread. Progress goes to the status bar and progress bar;
+    // cancellation is cooperative (work() polls isTaskCancelled()), so files are never left half-written,
+    // and ends at startCommit(), past which the task always finishes.
+    // Only one task runs at a time. Edits carry on alongside it through the registry, except while
+    // a task that writes the journal's snapshot runs (blocksEdits), which must not miss an edit.
+    private abstract class BackgroundTask<T, V> extends SwingWorker<T, V> {
+        final String label;
+        final boolean cancellable;
+        final boolean blocksEdits;
+        private final String unit;
+        private final String failurePrefix;
+        private volatile long startNanos;
+        private long lastReportNanos;
+        private boolean committed;
+
+        BackgroundTask(String label, String unit, String failurePrefix, boolean cancellable, boolean blocksEdits) {
+            this.label = label;
+            this.unit = unit;
+            this.failurePrefix = failurePrefix;
+            this.cancellable = cancellable;
+            this.blocksEdits = blocksEdits;
+        }
+
+        protected abstract T work() throws Exception;
+        protected abstract void succeeded(T result);
+
+        @Override
+        protected final T doInBackground() throws Exception {
+            startNanos = System.nanoTime();
+            try {
+                return work();
+            } finally {
+                SwingUtilities.invokeLater(() -> taskFinished(this));
+            }
+        }
+
+        boolean isTaskCancelled() { return isCancelled(); }
+
+        // Called by work() before it changes shared state that a cancel would leave half done, e.g.
+        // a load merging into the registry. Returns false if the task was cancelled first; after
+        // that, cancel requests are ignored and the task runs through to succeeded().
+        synchronized boolean startCommit() {
+            if (isCancelled()) return false;
+            committed = true;
+            SwingUtilities.invokeLater(() -> { if (activeTask == this) cancelBtn.setEnabled(false); });
+            return true;
+        }
+
+        synchronized void requestCancel() {
+            if (!committed) cancel(false);
+        }
+
+        double rate(long count) {
+            return count * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+        }
+
+        // Called on the worker thread; throttled to a few status updates per second.
+        void report(int percent, long count) {
+            long now = System.nanoTime();
+            if (now - lastReportNanos < 100_000_000L && percent < 100) return;
+            lastReportNanos = now;
+            setProgress(Math.max(0, Math.min(100, percent)));
+            String text = String.format(" %s... %d%% (%d %s, %.0f %s/s)", label, percent, count, unit, rate(count), unit);
+            SwingUtilities.invokeLater(() -> { if (activeTask == this && !isCancelled()) statusBar.setText(text); });
+        }
+
+        @Override
+        protected final void done() {
+            if (isCancelled()) { statusBar.setText(" " + label + " cancelled"); return; }
+            try {
+                succeeded(get());
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                JOptionPane.showMessageDialog(frame, failurePrefix + cause.getMessage());
+                statusBar.setText(" " + label + " failed");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
             }
-            JOptionPane.showMessageDialog(frame, "Summary exported to " + p);
-            statusBar.setText(" Exported summary: " + p.getFileName());
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(frame, "Failed to export summary: " + ex.getMessage());
         }
     }
 
     private void showSelectedStudentDetails() {
-        String name = studentList.getSelectedValue();
-        if (name == null) { detailsArea.setText(""); chartPanel.setStudent(null); return; }
-        Student s = students.get(name.toLowerCase());
-        StringBuilder sb = new StringBuilder();
-        sb.append("Student: ").append(s.getName()).append("\n");
-        sb.append("Subjects: ").append(s.getSubjects().size()).append("\n");
-        for (String subj : s.getSubjects()) {
-            sb.append("\n").append(subj).append(":\n");
-            sb.append(s.subjectSummary(subj)).append("\n");
-        }
-        sb.append("\n");
-        sb.append("Overall average: ").append(s.getOverallAverage().isPresent() ? String.format("%.2f", s.getOverallAverage().getAsDouble()) : "-").append("\n");
-        sb.append("Weighted average: ").append(s.getWeightedAverage().isPresent() ? String.format("%.2f", s.getWeightedAverage().getAsDouble()) : "-").append("\n");
-        detailsArea.setText(sb.toString());
-        chartPanel.setStudent(s);
+        int index = studentList.getSelectedIndex();
+        Student s = index < 0 ? null : registry.getByKey(studentListModel.getKeyAt(index));
+        shownStudent = s;
+        if (s == null) {
+            detailsHeader.setText(" ");
+            detailsModel.setRows(Collections.emptyList());
+            chartPanel.setStudent(null);
+            return;
+        }
+        renderDetails(s);
         statusBar.setText(" Viewing: " + s.getName());
     }
 
+    private void renderDetails(Student s) {
+        long start = System.nanoTime();
+        Student.Summary sum = new Student.Summary();
+        s.summarize(sum);
+        List<Student.SubjectRow> rows = s.subjectRows();
+        StringBuilder sb = new StringBuilder("<html>");
+        sb.append("Student: ").append(escapeHtml(s.getName())).append("<br>");
+        sb.append("Subjects: ").append(rows.size());
+        sb.append(" &nbsp; Overall average: ").append(sum.graded ? String.format("%.2f", sum.overall) : "-");
+        sb.append(" &nbsp; Weighted average: ").append(sum.graded ? String.format("%.2f", sum.weighted) : "-");
+        int rank = analytics.rankOf(s);
+        if (rank > 0) sb.append("<br>Class rank: ").append(rank).append(" of ").append(analytics.getRankedCount());
+        detailsHeader.setText(sb.append("</html>").toString());
+        // Keep the same subject selected across refreshes and students that have it.
+        int selected = detailsTable.getSelectedRow();
+        String subject = selected < 0 ? null : detailsModel.row(detailsTable.convertRowIndexToModel(selected)).subject;
+        detailsModel.setRows(rows);
+        for (int i = 0; subject != null && i < rows.size(); i++) {
+            if (rows.get(i).subject.equals(subject)) {
+                int view = detailsTable.convertRowIndexToView(i);
+                detailsTable.setRowSelectionInterval(view, view);
+                break;
+            }
+        }
+        chartPanel.setStudent(s);
+        DETAILS_LATENCY.recordSince(start);
+    }
+
+    private void showSelectedSubjectGrades() {
+        int selected = detailsTable.getSelectedRow();
+        if (selected < 0) {
+            gradesHeader.setText(NO_SUBJECT);
+            gradesModel.setGrades(Collections.emptyList());
+            return;
+        }
+        Student.SubjectRow row = detailsModel.row(detailsTable.convertRowIndexToModel(selected));
+        gradesHeader.setText(" All grades in " + row.subject + " (" + row.grades.size() + ")");
+        gradesModel.setGrades(row.grades);
+    }
+
+    private static String escapeHtml(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
     private void toggleTheme() {
         darkTheme = !darkTheme;
         applyTheme();
@@ -278,16 +908,26 @@ public class GradeTrackerGUI {
 
     private void applyTheme() {
         if (darkTheme) {
-            detailsArea.setBackground(new Color(43,43,43));
-            detailsArea.setForeground(new Color(220,220,220));
+            chartPanel.setDark(true);
+            detailsHeader.setBackground(new Color(43,43,43));
+            detailsHeader.setForeground(new Color(220,220,220));
+            detailsTable.setBackground(new Color(43,43,43));
+            detailsTable.setForeground(new Color(220,220,220));
+            gradesList.setBackground(new Color(43,43,43));
+            gradesList.setForeground(new Color(220,220,220));
             studentList.setBackground(new Color(60,63,65));
             studentList.setForeground(new Color(220,220,220));
             statusBar.setBackground(new Color(40,40,40));
             statusBar.setForeground(new Color(200,200,200));
             frame.getContentPane().setBackground(new Color(48,50,52));
         } else {
-            detailsArea.setBackground(new Color(250,250,252));
-            detailsArea.setForeground(Color.BLACK);
+            chartPanel.setDark(false);
+            detailsHeader.setBackground(new Color(250,250,252));
+            detailsHeader.setForeground(Color.BLACK);
+            detailsTable.setBackground(new Color(250,250,252));
+            detailsTable.setForeground(Color.BLACK);
+            gradesList.setBackground(new Color(250,250,252));
+            gradesList.setForeground(Color.BLACK);
             studentList.setBackground(Color.WHITE);
             studentList.setForeground(Color.DARK_GRAY);
             statusBar.setBackground(null);
@@ -316,58 +956,218 @@ public class GradeTrackerGUI {
             return this;
         }
     }
+
+    // Per-subject rows of the shown student. Values are read off the rows as cells are painted;
+    // the grade list is cut to a short preview, so its length never matters. The selected row's
+    // full list is in SubjectGradesModel.
+    private static class SubjectRowsModel extends AbstractTableModel {
+        private static final String[] COLUMNS = { "Subject", "Grades", "Average", "High", "Low", "Weight", "Grade preview" };
+        private static final int PREVIEW = 12;
+        private List<Student.SubjectRow> rows = Collections.emptyList();
+
+        void setRows(List<Student.SubjectRow> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        Student.SubjectRow row(int r) { return rows.get(r); }
+
+        @Override public int getRowCount() { return rows.size(); }
+        @Override public int getColumnCount() { return COLUMNS.length; }
+        @Override public String getColumnName(int c) { return COLUMNS[c]; }
+
+        @Override
+        public Class<?> getColumnClass(int c) {
+            if (c == 1 || c == 3 || c == 4) return Integer.class;
+            if (c == 2 || c == 5) return Double.class;
+            return String.class;
+        }
+
+        @Override
+        public Object getValueAt(int r, int c) {
+            Student.SubjectRow row = rows.get(r);
+            switch (c) {
+                case 0: return row.subject;
+                case 1: return row.grades.size();
+                case 2: return Math.round(row.average * 100) / 100.0;
+                case 3: return row.highest;
+                case 4: return row.lowest;
+                case 5: return row.weight;
+                default: return preview(row.grades);
+            }
+        }
+
+        private static String preview(List<Integer> grades) {
+            StringBuilder sb = new StringBuilder();
+            int shown = Math.min(PREVIEW, grades.size());
+            for (int i = 0; i < shown; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(grades.get(i));
+            }
+            if (grades.size() > shown) sb.append(", ... (+").append(grades.size() - shown).append(" more)");
+            return sb.toString();
+        }
+    }
+
+    // One subject's grades, numbered in the order they were given. The list is the subject row's
+    // snapshot view, so a cell is formatted only when it is painted.
+    private static class SubjectGradesModel extends AbstractListModel<String> {
+        private List<Integer> grades = Collections.emptyList();
+
+        void setGrades(List<Integer> grades) {
+            int before = this.grades.size();
+            this.grades = grades;
+            if (before > 0) fireIntervalRemoved(this, 0, before - 1);
+            if (!grades.isEmpty()) fireIntervalAdded(this, 0, grades.size() - 1);
+        }
+
+        @Override public int getSize() { return grades.size(); }
+        @Override public String getElementAt(int i) { return String.format("%6d: %3d", i + 1, grades.get(i)); }
+    }
+
+    // Bar chart of the selected student's subject averages. The bars are derived once per student
+    // version and drawn into an image that is reused until the size, screen scale, theme or bars
+    // change, so an ordinary repaint is a single blit. Past the point where every subject gets a
+    // 20px bar, bars shrink to fit and labels are drawn only where they have room.
     private static class ChartPanel extends JPanel {
+        private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 11);
+        private static final Color BAR = new Color(100, 149, 237);
+        private static final Color LIGHT_BG = new Color(245,245,248);
+        private static final Color DARK_BG = new Color(50,52,54);
+        private static final Color DARK_TEXT = new Color(200,200,200);
+        private static final Metrics.Histogram PAINT_LATENCY = Metrics.histogram("gui.chart.paint");
+
+        private static final class Bars {
+            final long version;
+            final String[] labels;
+            final String[] values;
+            final double[] averages;
+            final double max;
+            Bars(long version, String[] labels, String[] values, double[] averages, double max) {
+                this.version = version;
+                this.labels = labels;
+                this.values = values;
+                this.averages = averages;
+                this.max = max;
+            }
+        }
+
         private Student student;
+        private Bars bars;
+        private boolean dark;
+        private BufferedImage image;
+        private Bars imageBars;
+        private boolean imageDark;
+        private double imageScale;
+
         public ChartPanel() { setPreferredSize(new Dimension(320, 200)); }
-        public void setStudent(Student s) { this.student = s; repaint(); }
+        public void setStudent(Student s) {
+            if (s != student) bars = null;
+            this.student = s;
+            repaint();
+        }
+        public void setDark(boolean dark) { this.dark = dark; repaint(); }
+
+        private Bars bars() {
+            Student s = student;
+            if (s == null) return null;
+            synchronized (s) {
+                long version = s.getVersion();
+                if (bars != null && bars.version == version) return bars;
+                Set<String> subjects = s.getSubjects();
+                int n = subjects.size();
+                String[] labels = new String[n];
+                String[] values = new String[n];
+                double[] averages = new double[n];
+                double max = 0;
+                int i = 0;
+                for (String subj : subjects) {
+                    double v = s.getSubjectAverage(subj).orElse(0.0);
+                    labels[i] = subj;
+                    values[i] = String.format("%.0f", v);
+                    averages[i] = v;
+                    if (v > max) max = v;
+                    i++;
+                }
+                bars = new Bars(version, labels, values, averages, Math.max(10, max));
+                return bars;
+            }
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
+            long start = System.nanoTime();
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             int w = getWidth();
             int h = getHeight();
-            g2.setColor(new Color(245,245,248));
+            if (w <= 0 || h <= 0) return;
+            Bars b = bars();
+            double scale = ((Graphics2D) g).getTransform().getScaleX();
+            int iw = (int) Math.ceil(w * scale);
+            int ih = (int) Math.ceil(h * scale);
+            if (image == null || image.getWidth() != iw || image.getHeight() != ih
+                    || imageBars != b || imageDark != dark || imageScale != scale) {
+                if (image == null || image.getWidth() != iw || image.getHeight() != ih) {
+                    image = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+                }
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    g2.scale(scale, scale);
+                    render(g2, b, w, h);
+                } finally {
+                    g2.dispose();
+                }
+                imageBars = b;
+                imageDark = dark;
+                imageScale = scale;
+            }
+            g.drawImage(image, 0, 0, w, h, null);
+            PAINT_LATENCY.recordSince(start);
+        }
+
+        private void render(Graphics2D g2, Bars b, int w, int h) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            Color text = dark ? DARK_TEXT : Color.DARK_GRAY;
+            g2.setColor(dark ? DARK_BG : LIGHT_BG);
             g2.fillRect(0,0,w,h);
-            if (student == null || student.getSubjects().isEmpty()) {
+            if (b == null || b.labels.length == 0) {
                 g2.setColor(Color.GRAY);
                 g2.drawString("No student selected or no subjects", 10, 20);
                 return;
             }
-            Map<String, Double> averages = new LinkedHashMap<>();
-            double max = 0;
-            for (String subj : student.getSubjects()) {
-                OptionalDouble od = student.getSubjectAverage(subj);
-                double v = od.isPresent() ? od.getAsDouble() : 0.0;
-                averages.put(subj, v);
-                if (v > max) max = v;
-            }
-            if (max < 10) max = 10;
             int padding = 30;
             int barAreaW = w - padding*2;
-            int count = Math.max(1, averages.size());
-            int barWidth = Math.max(20, barAreaW / count - 10);
-            int x = padding;
+            int count = b.labels.length;
+            boolean dense = barAreaW / count - 10 < 20;
+            double slot = dense ? Math.max(1, barAreaW) / (double) count : Math.max(20, barAreaW / count - 10) + 10;
+            int gap = dense ? (int) Math.min(10, slot / 4) : 10;
+            int barWidth = Math.max(1, (int) slot - gap);
             int baseY = h - padding - 20;
-            g2.setColor(Color.DARK_GRAY);
+            g2.setColor(text);
             g2.drawLine(padding-5, baseY, w-padding+5, baseY);
-            for (Map.Entry<String, Double> e : averages.entrySet()) {
-                double val = e.getValue();
-                int barH = (int) ((val / max) * (h - padding*3));
+            g2.setFont(LABEL_FONT);
+            FontMetrics fm = g2.getFontMetrics();
+            double x = padding;
+            int labelEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++, x += slot) {
+                int bx = (int) x;
+                int barH = (int) ((b.averages[i] / b.max) * (h - padding*3));
                 int y = baseY - barH;
-                g2.setColor(new Color(100, 149, 237));
-                g2.fillRect(x, y, barWidth, barH);
-                g2.setColor(Color.DARK_GRAY);
-                g2.drawRect(x, y, barWidth, barH);
-                g2.setFont(new Font("SansSerif", Font.PLAIN, 11));
-                String label = e.getKey();
-                int strW = g2.getFontMetrics().stringWidth(label);
-                int lx = x + Math.max(0, (barWidth - strW)/2);
-                g2.drawString(label, lx, baseY + 15);
-                String valStr = String.format("%.0f", val);
-                int valW = g2.getFontMetrics().stringWidth(valStr);
-                g2.drawString(valStr, x + Math.max(0, (barWidth - valW)/2), y - 6);
-                x += barWidth + 10;
+                g2.setColor(BAR);
+                g2.fillRect(bx, y, barWidth, barH);
+                if (barWidth >= 3) {
+                    g2.setColor(text);
+                    g2.drawRect(bx, y, barWidth, barH);
+                }
+                g2.setColor(text);
+                int strW = fm.stringWidth(b.labels[i]);
+                int lx = bx + Math.max(0, (barWidth - strW)/2);
+                if (!dense || (lx > labelEnd && lx + strW <= w)) {
+                    g2.drawString(b.labels[i], lx, baseY + 15);
+                    labelEnd = lx + strW + 4;
+                }
+                int valW = fm.stringWidth(b.values[i]);
+                if (!dense || valW <= slot) g2.drawString(b.values[i], bx + Math.max(0, (barWidth - valW)/2), y - 6);
             }
         }
     }
@@ -0,0 +1,242 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Versioned binary gradebook snapshot, the compact counterpart of CSVUtils.saveStudents/loadStudents.
+//
+//   magic "GTSN", u8 version
+//   varint stringCount, stringCount x (varint utf8Length, utf8 bytes)   -- names and subjects
+//   varint studentCount, studentCount x student
+//   student: varint nameRef, varint subjectCount, subjectCount x subject
+//   subject: varint subjectRef, f64 weight (raw bits), varint gradeCount, gradeCount x u8 grade
+//
+// Unlike CSV, weights keep full precision and subjects that only have a weight are kept.
+public class GradebookSnapshot {
+    public static final String EXTENSION = "gtb";
+    private static final byte[] MAGIC = { 'G', 'T', 'S', 'N' };
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Written to a sibling temp file, forced to disk and moved over the target, so a crash or a
+    // failed write leaves the previous snapshot intact.
+    public static void saveStudents(Path file, List<Student> students) throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                write(Channels.newOutputStream(ch), students);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static List<Student> loadStudents(Path file) throws IOException {
+        if (!Files.exists(file)) return new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    static void write(OutputStream os, List<Student> students) throws IOException {
+        // One read per student, taken before anything is written: the string table and the
+        // records come from the same states, so edits made meanwhile are simply not in this snapshot.
+        Student.State[] states = new Student.State[students.size()];
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int n = 0;
+        for (Student s : students) {
+            Student.State st = s.state();
+            states[n++] = st;
+            ref(refs, strings, s.getName());
+            for (int id : st.gradedIds) ref(refs, strings, SubjectDictionary.name(id));
+            for (int k : st.weightOnly) ref(refs, strings, SubjectDictionary.name(st.ids[k]));
+        }
+        Output out = new Output(os);
+        out.write(MAGIC, 0, MAGIC.length);
+        out.writeByte(VERSION);
+        out.writeVarint(strings.size());
+        for (String str : strings) {
+            byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(utf8.length);
+            out.write(utf8, 0, utf8.length);
+        }
+        out.writeVarint(n);
+        n = 0;
+        for (Student s : students) {
+            Student.State st = states[n++];
+            out.writeVarint(refs.get(s.getName()));
+            out.writeVarint(st.gradedIds.length + st.weightOnly.length);
+            for (int i = 0; i < st.gradedIds.length; i++) {
+                out.writeVarint(refs.get(SubjectDictionary.name(st.gradedIds[i])));
+                out.writeDouble(st.gradedWeights[i]);
+                SubjectGrades.Run r = st.runs[i];
+                out.writeVarint(r.count);
+                out.write(r.grades, 0, r.count);
+            }
+            for (int k : st.weightOnly) {
+                out.writeVarint(refs.get(SubjectDictionary.name(st.ids[k])));
+                out.writeDouble(st.weights[k]);
+                out.writeVarint(0);
+            }
+        }
+        out.flush();
+    }
+
+    static List<Student> read(InputStream is) throws IOException {
+        Input in = new Input(is);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic, 0, magic.length);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) throw new IOException("Not a gradebook snapshot");
+        }
+        int version = in.readByte();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version: " + version);
+        String[] strings = new String[in.readVarint()];
+        byte[] buf = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int len = in.readVarint();
+            if (buf.length < len) buf = new byte[Math.max(len, buf.length * 2)];
+            in.readFully(buf, 0, len);
+            strings[i] = new String(buf, 0, len, StandardCharsets.UTF_8);
+        }
+        int count = in.readVarint();
+        List<Student> students = new ArrayList<>(Math.min(count, 1 << 20));
+        for (int i = 0; i < count; i++) {
+            Student s = new Student(string(strings, in.readVarint()));
+            int subjects = in.readVarint();
+            for (int j = 0; j < subjects; j++) {
+                int subject = SubjectDictionary.id(string(strings, in.readVarint()).trim());
+                s.setSubjectWeight(subject, in.readDouble());
+                int n = in.readVarint();
+                if (buf.length < n) buf = new byte[Math.max(n, buf.length * 2)];
+                in.readFully(buf, 0, n);
+                s.appendGrades(subject, buf, 0, n);
+            }
+            students.add(s);
+        }
+        return students;
+    }
+
+    private static void ref(Map<String, Integer> refs, List<String> strings, String s) {
+        if (refs.putIfAbsent(s, strings.size()) == null) strings.add(s);
+    }
+
+    private static String string(String[] strings, int ref) throws IOException {
+        if (ref < 0 || ref >= strings.length) throw new IOException("Corrupt snapshot: string ref " + ref);
+        return strings[ref];
+    }
+
+    // Unsynchronized buffered writer; DataOutputStream over BufferedOutputStream locks on every byte.
+    static final class Output {
+        private final OutputStream os;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+
+        Output(OutputStream os) { this.os = os; }
+
+        void writeByte(int b) throws IOException {
+            if (pos == buf.length) drain();
+            buf[pos++] = (byte) b;
+        }
+
+        void write(byte[] src, int off, int len) throws IOException {
+            if (len > buf.length - pos) {
+                drain();
+                if (len > buf.length) { os.write(src, off, len); return; }
+            }
+            System.arraycopy(src, off, buf, pos, len);
+            pos += len;
+        }
+
+        void writeVarint(int v) throws IOException {
+            if (buf.length - pos < 5) drain();
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeDouble(double d) throws IOException {
+            if (buf.length - pos < 8) drain();
+            long bits = Double.doubleToRawLongBits(d);
+            for (int shift = 56; shift >= 0; shift -= 8) buf[pos++] = (byte) (bits >>> shift);
+        }
+
+        void flush() throws IOException {
+            drain();
+            os.flush();
+        }
+
+        private void drain() throws IOException {
+            if (pos > 0) os.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    static final class Input {
+        private final InputStream is;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+
+        Input(InputStream is) { this.is = is; }
+
+        int readByte() throws IOException {
+            if (pos == limit && !fill()) throw new EOFException();
+            return buf[pos++] & 0xFF;
+        }
+
+        void readFully(byte[] dst, int off, int len) throws IOException {
+            while (len > 0) {
+                if (pos == limit && !fill()) throw new EOFException();
+                int n = Math.min(len, limit - pos);
+                System.arraycopy(buf, pos, dst, off, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        int readVarint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (v < 0) throw new IOException("Corrupt snapshot: negative length");
+                    return v;
+                }
+            }
+            throw new IOException("Corrupt snapshot: varint too long");
+        }
+
+        double readDouble() throws IOException {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) bits = (bits << 8) | readByte();
+            return Double.longBitsToDouble(bits);
+        }
+
+        private boolean fill() throws IOException {
+            int n = is.read(buf, 0, buf.length);
+            if (n <= 0) return false;
+            pos = 0;
+            limit = n;
+            return true;
+        }
+    }
+}
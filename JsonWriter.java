@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Streaming JSON writer: tokens go straight to the underlying Writer and only a stack of
+// "first element" flags is kept for the commas. Non-finite doubles are written as null.
+final class JsonWriter {
+    private final Writer out;
+    private boolean[] first = new boolean[8];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(Writer out) { this.out = out; }
+
+    JsonWriter beginObject() throws IOException { return open('{'); }
+    JsonWriter endObject() throws IOException { return close('}'); }
+    JsonWriter beginArray() throws IOException { return open('['); }
+    JsonWriter endArray() throws IOException { return close(']'); }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String v) throws IOException {
+        separate();
+        if (v == null) out.write("null");
+        else string(v);
+        return this;
+    }
+
+    JsonWriter value(long v) throws IOException {
+        separate();
+        out.write(Long.toString(v));
+        return this;
+    }
+
+    JsonWriter value(double v) throws IOException {
+        separate();
+        out.write(Double.isFinite(v) ? Double.toString(v) : "null");
+        return this;
+    }
+
+    JsonWriter value(boolean v) throws IOException {
+        separate();
+        out.write(v ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    void flush() throws IOException { out.flush(); }
+
+    private JsonWriter open(char c) throws IOException {
+        separate();
+        out.write(c);
+        if (depth == first.length) first = Arrays.copyOf(first, depth * 2);
+        first[depth++] = true;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        if (depth == 0) throw new IllegalStateException("Nothing to close");
+        depth--;
+        out.write(c);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) { afterName = false; return; }
+        if (depth == 0) return;
+        if (!first[depth - 1]) out.write(',');
+        first[depth - 1] = false;
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') continue;
+            out.write(s, start, i - start);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    out.write("\\u");
+                    String hex = Integer.toHexString(c);
+                    for (int k = hex.length(); k < 4; k++) out.write('0');
+                    out.write(hex);
+            }
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
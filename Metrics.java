@@ -0,0 +1,158 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide counters and latency histograms, cheap enough to leave on in the hot paths:
+// counters are LongAdders and a histogram is a lock-free array of log-linear buckets (16 per
+// power of two, so a reported percentile is within ~6% of the recorded value, as in HdrHistogram).
+// Names are dotted ("csv.load", "csv.load.rows"); a counter named after a histogram plus a suffix
+// is a volume for that operation, so its rate is the counter over the histogram's total time.
+// Published over JMX as gradetracker:type=Metrics once registerMBean() is called.
+public final class Metrics {
+    public interface MetricsMXBean {
+        Map<String, Long> getCounters();
+        Map<String, Snapshot> getLatencies();
+        Map<String, String> getNotes();
+        void reset();
+    }
+
+    public static final String OBJECT_NAME = "gradetracker:type=Metrics";
+
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> NOTES = new ConcurrentHashMap<>();
+    private static boolean registered;
+
+    private Metrics() {}
+
+    public static LongAdder counter(String name) { return COUNTERS.computeIfAbsent(name, k -> new LongAdder()); }
+    public static Histogram histogram(String name) { return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram()); }
+
+    // Free-form diagnostic text, e.g. the stack of the last EDT stall.
+    public static void note(String name, String text) { NOTES.put(name, text); }
+
+    public static Map<String, Long> counters() {
+        Map<String, Long> out = new TreeMap<>();
+        COUNTERS.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    public static Map<String, Snapshot> latencies() {
+        Map<String, Snapshot> out = new TreeMap<>();
+        HISTOGRAMS.forEach((k, v) -> out.put(k, v.snapshot()));
+        return out;
+    }
+
+    public static Map<String, String> notes() { return new TreeMap<>(NOTES); }
+
+    // Zeroes everything in place, so callers holding a counter or histogram keep recording.
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+        NOTES.clear();
+    }
+
+    public static synchronized void registerMBean() {
+        if (registered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMXBean() {
+                @Override public Map<String, Long> getCounters() { return counters(); }
+                @Override public Map<String, Snapshot> getLatencies() { return latencies(); }
+                @Override public Map<String, String> getNotes() { return notes(); }
+                @Override public void reset() { Metrics.reset(); }
+            }, new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException | SecurityException e) {
+            System.err.println("Metrics MBean not registered: " + e);
+        }
+    }
+
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            total.add(nanos);
+            long m = max.get();
+            while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+        }
+
+        public void recordSince(long startNanos) { record(System.nanoTime() - startNanos); }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) n += counts[i] = buckets.get(i);
+            long m = max.get();
+            return new Snapshot(n, total.sum(), m,
+                    percentile(counts, n, 0.50, m), percentile(counts, n, 0.90, m), percentile(counts, n, 0.99, m));
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            total.reset();
+            max.set(0);
+        }
+
+        // Values below SUB get a bucket each; above that, the top SUB_BITS+1 bits pick the bucket.
+        static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            return (e - SUB_BITS + 1) * SUB + (int) ((v >>> (e - SUB_BITS)) & (SUB - 1));
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB) return bucket;
+            int shift = bucket / SUB - 1;
+            long lower = (long) (SUB + bucket % SUB) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        private static long percentile(long[] counts, long n, double p, long max) {
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(p * n), seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+
+    // Read-only view of a histogram; public getters so JMX maps it to CompositeData.
+    public static final class Snapshot {
+        private final long count, totalNanos, maxNanos, p50Nanos, p90Nanos, p99Nanos;
+
+        Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public long getCount() { return count; }
+        public double getTotalMillis() { return totalNanos / 1e6; }
+        public double getMeanMillis() { return count == 0 ? 0.0 : totalNanos / 1e6 / count; }
+        public double getP50Millis() { return p50Nanos / 1e6; }
+        public double getP90Millis() { return p90Nanos / 1e6; }
+        public double getP99Millis() { return p99Nanos / 1e6; }
+        public double getMaxMillis() { return maxNanos / 1e6; }
+    }
+}
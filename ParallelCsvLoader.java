@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Parallel gradebook CSV import. The file is cut into chunks that end just after a '\n' byte,
+// each chunk is memory-mapped, decoded and parsed by its own CsvStreamLoader on a fork-join
+// pool, and the per-chunk maps are merged left to right. Quotes never span lines in this
+// format (CSVUtils reads line by line), so a line break is always a record boundary, and the
+// merge order reproduces the sequential result: students in first-seen order (each chunk's map is
+// in its own first-seen order, and a right chunk only adds names the left has not seen), first-seen
+// name casing, grades in file order, last weight wins, and the first failing row decides the
+// exception.
+public class ParallelCsvLoader {
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private long rows;
+    private long parseErrors;
+    private long elapsedNanos;
+
+    public ParallelCsvLoader() { this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE); }
+    public ParallelCsvLoader(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public Map<String, Student> load(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(ch);
+            ChunkResult result = pool.invoke(new ChunkTask(ch, bounds, 0, bounds.length - 1));
+            rows = result.rows;
+            parseErrors = result.parseErrors;
+            elapsedNanos = System.nanoTime() - start;
+            if (result.error == null) CsvStreamLoader.recordLoad(start, rows, ch.size(), parseErrors);
+            if (result.error instanceof IOException) throw (IOException) result.error;
+            if (result.error instanceof RuntimeException) throw (RuntimeException) result.error;
+            if (result.error instanceof Error) throw (Error) result.error;
+            return result.students;
+        }
+    }
+
+    public long getRows() { return rows; }
+    public long getParseErrors() { return parseErrors; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public double getRowsPerSecond() { return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos; }
+
+    private long[] chunkBounds(FileChannel ch) throws IOException {
+        long size = ch.size();
+        long[] bounds = new long[16];
+        int n = 0;
+        bounds[n++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(1 << 16);
+        long pos = 0;
+        while (size - pos > chunkSize) {
+            long next = nextLineStart(ch, pos + chunkSize, size, probe);
+            if (next >= size) break;
+            if (n == bounds.length) bounds = Arrays.copyOf(bounds, n * 2);
+            bounds[n++] = next;
+            pos = next;
+        }
+        if (n == bounds.length) bounds = Arrays.copyOf(bounds, n + 1);
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    private static long nextLineStart(FileChannel ch, long from, long size, ByteBuffer probe) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int read = ch.read(probe, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static final class ChunkResult {
+        final Map<String, Student> students;
+        final Throwable error;
+        final long rows;
+        final long parseErrors;
+        ChunkResult(Map<String, Student> students, Throwable error, long rows, long parseErrors) {
+            this.students = students;
+            this.error = error;
+            this.rows = rows;
+            this.parseErrors = parseErrors;
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveTask<ChunkResult> {
+        private final FileChannel ch;
+        private final long[] bounds;
+        private final int lo;
+        private final int hi;
+
+        ChunkTask(FileChannel ch, long[] bounds, int lo, int hi) {
+            this.ch = ch;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (hi - lo == 1) return parseChunk();
+            int mid = (lo + hi) >>> 1;
+            ChunkTask right = new ChunkTask(ch, bounds, mid, hi);
+            right.fork();
+            ChunkResult left = new ChunkTask(ch, bounds, lo, mid).compute();
+            return merge(left, right.join());
+        }
+
+        private ChunkResult parseChunk() {
+            CsvStreamLoader loader = new CsvStreamLoader();
+            try {
+                long start = bounds[lo];
+                MappedByteBuffer bytes = ch.map(FileChannel.MapMode.READ_ONLY, start, bounds[hi] - start);
+                CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(bytes);
+                Map<String, Student> students = loader.load(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining(), start == 0);
+                return new ChunkResult(students, null, loader.getRows(), loader.getParseErrors());
+            } catch (IOException | RuntimeException | Error e) {
+                return new ChunkResult(null, e, loader.getRows(), loader.getParseErrors());
+            }
+        }
+
+        private static ChunkResult merge(ChunkResult left, ChunkResult right) {
+            long rows = left.rows + right.rows;
+            long errors = left.parseErrors + right.parseErrors;
+            if (left.error != null) return new ChunkResult(null, left.error, rows, errors);
+            if (right.error != null) return new ChunkResult(null, right.error, rows, errors);
+            for (Map.Entry<String, Student> e : right.students.entrySet()) {
+                Student mine = left.students.putIfAbsent(e.getKey(), e.getValue());
+                if (mine != null) mine.appendAll(e.getValue());
+            }
+            return new ChunkResult(left.students, null, rows, errors);
+        }
+    }
+}
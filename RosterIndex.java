@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Search indexes over the roster, kept current from registry events:
+//   - names: every word-start suffix of each lower-cased key ("doe, ann" is found by "doe" and
+//     "ann"), sorted, so a name prefix is a binary search;
+//   - subjects: lower-cased subject to a bit set of the students with grades in it;
+//   - weighted: students sorted by weighted average, so "weighted < 60" is a binary search.
+// Indexed students get a small int id, reused after removal, so per-student data is array slots
+// and bits rather than hashed keys. All access is under the index's lock; a query holds it for
+// the length of one lookup.
+//
+// A query is space-separated terms, all of which must match, e.g.  ann subject:math weighted<60
+//   subject:<prefix>              any subject starting with the prefix; quote names with spaces
+//   weighted|avg <op> <number>    op is one of < <= > >= =
+//   anything else                 each word a prefix of some word in the name, in any order
+public class RosterIndex implements StudentRegistry.Listener {
+    private static final char SEP = '\u0000';
+    private static final Pattern RANGE = Pattern.compile("(?i)\\b(?:weighted|avg)\\s*(<=|>=|<|>|=)\\s*(\\d+(?:\\.\\d+)?)");
+    private static final Pattern SUBJECT = Pattern.compile("(?i)\\bsubject:(?:\"([^\"]*)\"|(\\S+))");
+
+    private final StudentRegistry registry;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] keys = new String[1024];         // id -> key, null while the id is free
+    private double[] weights = new double[1024];      // id -> weighted average, NaN if none
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private final SortedRun<String> names = new SortedRun<>(e -> ids.containsKey(keyOfEntry(e)));
+    private final TreeMap<String, BitSet> subjects = new TreeMap<>();
+    private final Map<String, BitSet> subjectBits = new HashMap<>();  // exact subject name -> its set
+    private final SortedRun<Ranked> weighted = new SortedRun<>(r -> keys[r.id] != null && weights[r.id] == r.value);
+
+    private RosterIndex(StudentRegistry registry) { this.registry = registry; }
+
+    public static RosterIndex attach(StudentRegistry registry) {
+        RosterIndex index = new RosterIndex(registry);
+        registry.addListener(index);
+        for (Student s : registry.students()) index.studentChanged(s);
+        return index;
+    }
+
+    public void detach() { registry.removeListener(this); }
+
+    @Override public void studentAdded(Student s) { studentChanged(s); }
+
+    @Override
+    public synchronized void studentChanged(Student s) {
+        String key = s.getKey();
+        Integer known = ids.get(key);
+        int id;
+        if (known == null) {
+            // Skip a student that was removed before this event got here.
+            if (registry.getByKey(key) != s) return;
+            id = allocate(key);
+            for (String suffix : wordSuffixes(key)) names.add(suffix + SEP + key);
+        } else {
+            id = known;
+        }
+        for (String subject : s.getSubjects()) {
+            BitSet bits = subjectBits.get(subject);
+            if (bits == null) {
+                bits = subjects.computeIfAbsent(subject.toLowerCase(), k -> new BitSet());
+                subjectBits.put(subject, bits);
+            }
+            bits.set(id);
+        }
+        double now = s.getWeightedAverage().orElse(Double.NaN);
+        double old = weights[id];
+        if (Double.compare(old, now) == 0) return;
+        if (!Double.isNaN(old)) weighted.removed();
+        weights[id] = now;
+        if (!Double.isNaN(now)) weighted.add(new Ranked(now, 0, id));
+    }
+
+    @Override
+    public synchronized void studentRemoved(Student s) {
+        String key = s.getKey();
+        Integer id = ids.remove(key);
+        if (id == null) return;
+        for (int i = wordSuffixes(key).size(); i > 0; i--) names.removed();
+        for (String subject : s.getSubjects()) {
+            BitSet bits = subjectBits.get(subject);
+            if (bits != null) bits.clear(id);
+        }
+        if (!Double.isNaN(weights[id])) weighted.removed();
+        keys[id] = null;
+        weights[id] = Double.NaN;
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+    }
+
+    public synchronized int size() { return ids.size(); }
+
+    private int allocate(String key) {
+        int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, id * 2);
+            weights = Arrays.copyOf(weights, id * 2);
+        }
+        keys[id] = key;
+        weights[id] = Double.NaN;
+        ids.put(key, id);
+        return id;
+    }
+
+    public Query compile(String text) { return new Query(text); }
+
+    // A parsed query. matches() answers it from the indexes: it sizes up each term with a lookup,
+    // walks the narrowest one and checks the rest per key. test() checks a single key, e.g. for
+    // students added after the query ran.
+    public final class Query {
+        private final List<String> nameWords;
+        private final List<String> subjectPrefixes = new ArrayList<>();
+        private double from = Double.NEGATIVE_INFINITY;
+        private double to = Double.POSITIVE_INFINITY;
+        private boolean fromInclusive = true;
+        private boolean toInclusive = true;
+        private boolean ranged;
+
+        Query(String text) {
+            String rest = text.toLowerCase();
+            Matcher m = SUBJECT.matcher(rest);
+            while (m.find()) subjectPrefixes.add((m.group(1) != null ? m.group(1) : m.group(2)).trim());
+            rest = m.replaceAll(" ");
+            m = RANGE.matcher(rest);
+            while (m.find()) {
+                double v = Double.parseDouble(m.group(2));
+                ranged = true;
+                switch (m.group(1)) {
+                    case "<": bound(false, v, false); break;
+                    case "<=": bound(false, v, true); break;
+                    case ">": bound(true, v, false); break;
+                    case ">=": bound(true, v, true); break;
+                    default: bound(true, v, true); bound(false, v, true); break;
+                }
+            }
+            nameWords = words(m.replaceAll(" "));
+        }
+
+        private void bound(boolean lower, double v, boolean inclusive) {
+            if (lower && (v > from || (v == from && !inclusive))) { from = v; fromInclusive = inclusive; }
+            if (!lower && (v < to || (v == to && !inclusive))) { to = v; toInclusive = inclusive; }
+        }
+
+        public boolean isEmpty() { return nameWords.isEmpty() && subjectPrefixes.isEmpty() && !ranged; }
+
+        // Whether grade edits can change the result, i.e. anything beyond name words.
+        public boolean readsGrades() { return !subjectPrefixes.isEmpty() || ranged; }
+
+        public Set<String> matches() {
+            synchronized (RosterIndex.this) {
+                if (isEmpty()) return new HashSet<>(ids.keySet());
+                int best = Integer.MAX_VALUE;
+                int lo = 0, hi = 0;
+                SortedRun<?> run = null;
+                BitSet subjectIds = null;
+                for (String w : nameWords) {
+                    int wordLo = names.lowerBound(w);
+                    int wordHi = names.lowerBound(w + Character.MAX_VALUE);
+                    if (wordHi - wordLo < best) { lo = wordLo; hi = wordHi; best = hi - lo; run = names; }
+                }
+                for (String p : subjectPrefixes) {
+                    BitSet bits = subjectsWithPrefix(p);
+                    int n = bits.cardinality();
+                    if (n < best) { best = n; subjectIds = bits; run = null; }
+                }
+                if (ranged) {
+                    int rangeLo = weighted.lowerBound(new Ranked(from, fromInclusive ? -1 : 1, -1));
+                    int rangeHi = Math.max(rangeLo, weighted.lowerBound(new Ranked(to, toInclusive ? 1 : -1, -1)));
+                    if (rangeHi - rangeLo < best) { lo = rangeLo; hi = rangeHi; subjectIds = null; run = weighted; }
+                }
+                // With a single term every live entry in its range matches.
+                boolean single = nameWords.size() + subjectPrefixes.size() + (ranged ? 1 : 0) == 1;
+                Set<String> out = new HashSet<>(Math.max(16, best * 4 / 3 + 1));
+                if (subjectIds != null) {
+                    for (int id = subjectIds.nextSetBit(0); id >= 0; id = subjectIds.nextSetBit(id + 1)) {
+                        if (single || test(keys[id])) out.add(keys[id]);
+                    }
+                } else if (run == names) {
+                    for (int i = lo; i < hi; i++) {
+                        String key = keyOfEntry(names.get(i));
+                        if (single ? ids.containsKey(key) : test(key)) out.add(key);
+                    }
+                } else {
+                    for (int i = lo; i < hi; i++) {
+                        Ranked r = weighted.get(i);
+                        String key = keys[r.id];
+                        if (key != null && (single ? weights[r.id] == r.value : test(key))) out.add(key);
+                    }
+                }
+                return out;
+            }
+        }
+
+        public boolean test(String key) {
+            synchronized (RosterIndex.this) {
+                Integer id = ids.get(key);
+                if (id == null) return false;
+                for (String w : nameWords) {
+                    if (!matchesName(key, w)) return false;
+                }
+                for (String p : subjectPrefixes) {
+                    boolean found = false;
+                    for (BitSet bits : subjects.subMap(p, true, p + Character.MAX_VALUE, false).values()) {
+                        if (found = bits.get(id)) break;
+                    }
+                    if (!found) return false;
+                }
+                if (ranged) {
+                    double w = weights[id];
+                    if (Double.isNaN(w)) return false;
+                    if (w < from || (w == from && !fromInclusive)) return false;
+                    if (w > to || (w == to && !toInclusive)) return false;
+                }
+                return true;
+            }
+        }
+    }
+
+    // Students with grades in any subject starting with the prefix.
+    private BitSet subjectsWithPrefix(String prefix) {
+        Collection<BitSet> sets = subjects.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+        if (sets.size() == 1) return sets.iterator().next();
+        BitSet out = new BitSet();
+        for (BitSet bits : sets) out.or(bits);
+        return out;
+    }
+
+    private static String keyOfEntry(String entry) { return entry.substring(entry.indexOf(SEP) + 1); }
+
+    private static boolean matchesName(String key, String prefix) {
+        for (int i = 0; i < key.length(); i++) {
+            if (isWordStart(key, i) && key.startsWith(prefix, i)) return true;
+        }
+        return false;
+    }
+
+    // The words of a query's name text, split where the index splits keys into words.
+    private static List<String> words(String text) {
+        List<String> out = new ArrayList<>(2);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) start = i;
+            if (!inWord && start >= 0) {
+                out.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    private static List<String> wordSuffixes(String key) {
+        List<String> out = new ArrayList<>(3);
+        for (int i = 0; i < key.length(); i++) {
+            if (isWordStart(key, i)) out.add(key.substring(i));
+        }
+        if (out.isEmpty()) out.add(key);
+        return out;
+    }
+
+    private static boolean isWordStart(String s, int i) {
+        return Character.isLetterOrDigit(s.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(s.charAt(i - 1)));
+    }
+
+    // A student's place in the weighted-average order. Bounds for lookups carry no id and sort
+    // just before (-1) or just after (1) every student with the same average.
+    private static final class Ranked implements Comparable<Ranked> {
+        final double value;
+        final int bound;
+        final int id;
+
+        Ranked(double value, int bound, int id) { this.value = value; this.bound = bound; this.id = id; }
+
+        @Override
+        public int compareTo(Ranked o) {
+            int c = Double.compare(value, o.value);
+            if (c != 0) return c;
+            c = Integer.compare(bound, o.bound);
+            return c != 0 || bound != 0 ? c : Integer.compare(id, o.id);
+        }
+    }
+
+    // A sorted array plus an unsorted tail of recent additions. The tail is sorted and merged in
+    // on the next lookup, or once it outgrows a quarter of the array, so a bulk load costs a few
+    // merges instead of a tree insert per entry. Removed entries stay in place until a merge
+    // finds them to be an eighth of the array; readers re-check whatever they find.
+    private static final class SortedRun<T extends Comparable<T>> {
+        private static final int MIN_TAIL = 4096;
+
+        private final Predicate<T> live;
+        private Object[] sorted = new Object[0];
+        private int size;
+        private final List<T> tail = new ArrayList<>();
+        private int removed;
+
+        SortedRun(Predicate<T> live) { this.live = live; }
+
+        void add(T e) {
+            tail.add(e);
+            if (tail.size() > Math.max(MIN_TAIL, size / 4)) merge();
+        }
+
+        void removed() { removed++; }
+
+        @SuppressWarnings("unchecked")
+        T get(int i) { return (T) sorted[i]; }
+
+        // Index of the first entry not below the bound.
+        int lowerBound(T bound) {
+            if (!tail.isEmpty() || removed > size / 8) merge();
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (get(mid).compareTo(bound) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private void merge() {
+            tail.sort(null);
+            boolean sweep = removed > size / 8;
+            Object[] out = new Object[size + tail.size()];
+            int i = 0, j = 0, n = 0;
+            while (i < size || j < tail.size()) {
+                T next = j == tail.size() || (i < size && get(i).compareTo(tail.get(j)) <= 0) ? get(i++) : tail.get(j++);
+                // Equal entries come from a student removed and added back; keep one.
+                if (n > 0 && next.compareTo(get(out, n - 1)) == 0) continue;
+                if (sweep && !live.test(next)) continue;
+                out[n++] = next;
+            }
+            sorted = n == out.length ? out : Arrays.copyOf(out, n);
+            size = n;
+            tail.clear();
+            if (sweep) removed = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T get(Object[] a, int i) { return (T) a[i]; }
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+// Gradebook kept as fixed-size segments plus a small index, so a save rewrites only the segments
+// holding students that changed. A segment is a plain CSV file (CSVUtils.saveStudents columns)
+// of up to segmentStudents students under <index>.segments/; a student stays in its segment until
+// removed, and new students fill the holes removals leave before a new segment is started.
+// As with CSV saves, a student without grades has no rows and is not stored.
+//
+// Changes are found through Student.getVersion(): for every key the store remembers the instance
+// and version it last wrote, so edits, replaced students and removals all mark their segment.
+// A save writes the changed segments to new files named by generation and fsyncs them, then
+// atomically renames a new index into place. A crash at any point leaves the old index and every
+// file it names intact. Files no index names any more (replaced segments, stamped with the time
+// they were replaced, and leftovers of a save that never committed) are deleted by a later save
+// once RETIRED_GRACE_MS has passed, so a reader still working from an older index can finish.
+// Saves hold an exclusive lock on <index>.segments/lock and only a save ever deletes anything:
+// opening a store to read it (the CLI, the HTTP server) changes nothing on disk, and a read that
+// still finds a file gone starts over from the new index.
+public class SegmentedStore {
+    public static final String EXTENSION = "gseg";
+    public static final int DEFAULT_SEGMENT_STUDENTS = 1024;
+
+    private static final String MAGIC = "GTSEG";
+    private static final int VERSION = 1;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("\\d+-\\d+\\.csv");
+    private static final String LOCK_FILE = "lock";
+    private static final int READ_ATTEMPTS = 5;
+    static final long RETIRED_GRACE_MS = 60_000;
+
+    // What one save wrote.
+    public static final class Saved {
+        public final int segmentsWritten;
+        public final int segments;
+        public final int studentsWritten;
+        public final long bytesWritten;
+
+        Saved(int segmentsWritten, int segments, int studentsWritten, long bytesWritten) {
+            this.segmentsWritten = segmentsWritten;
+            this.segments = segments;
+            this.studentsWritten = studentsWritten;
+            this.bytesWritten = bytesWritten;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        Student student;
+        long version = -1;  // version last written; -1 until the first save
+        long pending;       // version being written by the current save
+        Segment segment;
+        int stamp;
+
+        Entry(String key) { this.key = key; }
+    }
+
+    private static final class Segment {
+        final int id;
+        final List<Entry> members = new ArrayList<>();
+        String file;     // file the index names, null until first written
+        int stored;      // students with rows in file
+        String written;  // file written by the current save, not yet committed
+        int writtenStudents;
+        boolean dirty;
+        boolean queued;  // in withRoom
+
+        Segment(int id) { this.id = id; }
+    }
+
+    private final Path index;
+    private final Path dir;
+    private int segmentStudents;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    // Segments that may have room, oldest holes first; entries are rechecked when taken.
+    private final ArrayDeque<Segment> withRoom = new ArrayDeque<>();
+    private long generation;
+    private int nextSegmentId;
+    private int stamp;
+
+    private SegmentedStore(Path index, int segmentStudents) {
+        this.index = index;
+        this.dir = index.resolveSibling(index.getFileName() + ".segments");
+        this.segmentStudents = segmentStudents;
+    }
+
+    public static SegmentedStore open(Path index, Map<String, Student> out) throws IOException {
+        return open(index, out, DEFAULT_SEGMENT_STUDENTS, null);
+    }
+
+    // Opens the store at index, or starts an empty one if there is none, and puts the students it
+    // holds into out by key. segmentStudents applies only to a new store; an existing one keeps its own.
+    public static SegmentedStore open(Path index, Map<String, Student> out, int segmentStudents, CSVUtils.Progress progress) throws IOException {
+        if (segmentStudents <= 0) throw new IllegalArgumentException("Segment size must be positive");
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            SegmentedStore store = new SegmentedStore(index, segmentStudents);
+            Map<String, Student> loaded = new LinkedHashMap<>();
+            try {
+                if (Files.exists(index)) store.read(loaded, progress);
+            } catch (NoSuchFileException e) {
+                // A save committed and deleted the segments it replaced while they were read.
+                if (attempt == READ_ATTEMPTS || store.generation == readGeneration(index)) throw e;
+                continue;
+            }
+            out.putAll(loaded);
+            Metrics.histogram("store.load").recordSince(start);
+            return store;
+        }
+    }
+
+    public Path getIndex() { return index; }
+    public synchronized int getSegmentCount() { return segments.size(); }
+
+    // Makes the store hold exactly the given roster, writing only the segments that changed.
+    // Students may be edited while this runs; an edit that races with the write is picked up by
+    // the next save. On failure or cancellation the store on disk is unchanged.
+    public synchronized Saved save(Collection<Student> roster, CSVUtils.Progress progress) throws IOException {
+        long start = System.nanoTime();
+        int now = ++stamp;
+        int seen = 0;
+        for (Student s : roster) {
+            Entry e = entries.get(s.getKey());
+            if (e == null) {
+                e = new Entry(s.getKey());
+                entries.put(e.key, e);
+                place(e);
+            } else if (e.stamp == now) {
+                continue;
+            }
+            if (e.student != s || e.version != s.getVersion()) {
+                e.student = s;
+                e.segment.dirty = true;
+            }
+            e.stamp = now;
+            seen++;
+        }
+        if (seen < entries.size()) {
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry e = it.next();
+                if (e.stamp == now) continue;
+                it.remove();
+                e.segment.members.remove(e);
+                e.segment.dirty = true;
+                if (!e.segment.queued) { e.segment.queued = true; withRoom.addFirst(e.segment); }
+            }
+        }
+        List<Segment> dirty = new ArrayList<>();
+        for (Segment seg : segments) if (seg.dirty) dirty.add(seg);
+        if (dirty.isEmpty() && Files.exists(index)) return new Saved(0, segments.size(), 0, 0);
+
+        Files.createDirectories(dir);
+        try (FileChannel lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lock(lockChannel);
+            try {
+                deleteStrays();
+                return commit(dirty, progress, start);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private FileLock lock(FileChannel ch) throws IOException {
+        try {
+            return ch.lock();
+        } catch (OverlappingFileLockException e) {
+            throw new IOException("Segmented gradebook is being saved by another store: " + index, e);
+        }
+    }
+
+    // Writes the dirty segments and the index; caller holds the save lock.
+    private Saved commit(List<Segment> dirty, CSVUtils.Progress progress, long start) throws IOException {
+        long gen = generation + 1;
+        List<Path> written = new ArrayList<>();
+        int students = 0;
+        long bytes = 0;
+        boolean committed = false;
+        try {
+            StringBuilder sb = new StringBuilder(1 << 16);
+            int done = 0;
+            for (Segment seg : dirty) {
+                if (!seg.members.isEmpty()) {
+                    seg.written = seg.id + "-" + gen + ".csv";
+                    Path file = dir.resolve(seg.written);
+                    written.add(file);
+                    sb.setLength(0);
+                    sb.append(CSVUtils.CSV_HEADER);
+                    seg.writtenStudents = 0;
+                    for (Entry e : seg.members) {
+                        // Read before the rows, so an edit made meanwhile leaves the student dirty.
+                        e.pending = e.student.getVersion();
+                        int before = sb.length();
+                        e.student.appendCsvLines(sb);
+                        if (sb.length() > before) seg.writtenStudents++;
+                    }
+                    bytes += write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+                    students += seg.writtenStudents;
+                }
+                if (progress != null) {
+                    progress.update(++done, dirty.size());
+                    if (progress.isCancelled()) throw new CancellationException("Save cancelled");
+                }
+            }
+            writeIndex(gen);
+            committed = true;
+        } finally {
+            if (!committed) {
+                for (Segment seg : dirty) seg.written = null;
+                for (Path file : written) Files.deleteIfExists(file);
+            }
+        }
+
+        generation = gen;
+        FileTime retired = FileTime.fromMillis(System.currentTimeMillis());
+        for (Segment seg : dirty) {
+            seg.dirty = false;
+            if (seg.file != null) {
+                // Committed already; a file not stamped is swept a little early, which only makes a racing reader retry.
+                try { Files.setLastModifiedTime(dir.resolve(seg.file), retired); } catch (IOException ignored) {}
+            }
+            if (seg.members.isEmpty()) {
+                segments.remove(seg);
+                withRoom.remove(seg);
+                continue;
+            }
+            seg.file = seg.written;
+            seg.stored = seg.writtenStudents;
+            seg.written = null;
+            for (Entry e : seg.members) e.version = e.pending;
+        }
+        Metrics.histogram("store.save").recordSince(start);
+        Metrics.counter("store.save.segments").add(written.size());
+        Metrics.counter("store.save.students").add(students);
+        Metrics.counter("store.save.bytes").add(bytes);
+        return new Saved(written.size(), segments.size(), students, bytes);
+    }
+
+    private void place(Entry e) {
+        Segment seg;
+        while ((seg = withRoom.peekFirst()) != null && seg.members.size() >= segmentStudents) {
+            withRoom.pollFirst();
+            seg.queued = false;
+        }
+        if (seg == null) {
+            seg = new Segment(nextSegmentId++);
+            segments.add(seg);
+            seg.queued = true;
+            withRoom.addLast(seg);
+        }
+        seg.members.add(e);
+        seg.dirty = true;
+        e.segment = seg;
+    }
+
+    private static long write(Path file, byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        return bytes.length;
+    }
+
+    // Index: a header line "GTSEG <version> <generation> <segmentStudents>", then one line per
+    // segment: "<id> <file> <students>".
+    private void writeIndex(long gen) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(MAGIC).append(' ').append(VERSION).append(' ').append(gen).append(' ').append(segmentStudents).append('\n');
+        for (Segment seg : segments) {
+            if (seg.members.isEmpty()) continue;
+            boolean rewritten = seg.written != null;
+            sb.append(seg.id).append(' ').append(rewritten ? seg.written : seg.file).append(' ')
+                    .append(rewritten ? seg.writtenStudents : seg.stored).append('\n');
+        }
+        Path tmp = Files.createTempFile(index.toAbsolutePath().getParent(), index.getFileName().toString(), ".tmp");
+        try {
+            write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static long readGeneration(Path index) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            String[] head = line == null ? new String[0] : line.split(" ");
+            if (head.length != 4 || !MAGIC.equals(head[0])) throw new IOException("Not a segmented gradebook: " + index);
+            return Long.parseLong(head[2]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt segmented gradebook index: " + index, e);
+        }
+    }
+
+    private void read(Map<String, Student> out, CSVUtils.Progress progress) throws IOException {
+        List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+        String[] head = lines.isEmpty() ? new String[0] : lines.get(0).split(" ");
+        if (head.length != 4 || !MAGIC.equals(head[0])) throw new IOException("Not a segmented gradebook: " + index);
+        try {
+            if (Integer.parseInt(head[1]) != VERSION) throw new IOException("Unsupported segmented gradebook version: " + head[1]);
+            generation = Long.parseLong(head[2]);
+            segmentStudents = Integer.parseInt(head[3]);
+            for (int i = 1; i < lines.size(); i++) {
+                if (lines.get(i).isEmpty()) continue;
+                String[] f = lines.get(i).split(" ");
+                if (f.length != 3 || !SEGMENT_FILE.matcher(f[1]).matches()) throw new IOException("Corrupt segmented gradebook index: " + index);
+                Segment seg = new Segment(Integer.parseInt(f[0]));
+                seg.file = f[1];
+                Map<String, Student> loaded;
+                try (Reader in = Files.newBufferedReader(dir.resolve(seg.file))) {
+                    loaded = new CsvStreamLoader().load(in);
+                }
+                if (loaded.size() != Integer.parseInt(f[2])) {
+                    throw new IOException("Corrupt segmented gradebook: " + seg.file + " holds " + loaded.size() + " students, index says " + f[2]);
+                }
+                seg.stored = loaded.size();
+                for (Student s : loaded.values()) {
+                    Entry e = new Entry(s.getKey());
+                    e.student = s;
+                    e.version = s.getVersion();
+                    e.segment = seg;
+                    seg.members.add(e);
+                    entries.put(e.key, e);
+                    out.put(e.key, s);
+                }
+                segments.add(seg);
+                if (seg.members.size() < segmentStudents) { seg.queued = true; withRoom.addLast(seg); }
+                nextSegmentId = Math.max(nextSegmentId, seg.id + 1);
+                if (progress != null) {
+                    progress.update(i, lines.size() - 1);
+                    if (progress.isCancelled()) throw new CancellationException("Load cancelled");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt segmented gradebook index: " + index, e);
+        }
+    }
+
+    // Deletes segment files named neither by this store nor by the index on disk (which another
+    // store may have committed since this one was opened) once they are older than the grace
+    // period. Caller holds the save lock, so no other save is writing files meanwhile.
+    private void deleteStrays() throws IOException {
+        long cutoff = System.currentTimeMillis() - RETIRED_GRACE_MS;
+        Set<String> live = new HashSet<>();
+        for (Segment seg : segments) live.add(seg.file);
+        if (Files.exists(index)) {
+            List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+            for (int i = 1; i < lines.size(); i++) {
+                String[] f = lines.get(i).split(" ");
+                if (f.length == 3) live.add(f[1]);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!SEGMENT_FILE.matcher(name).matches() || live.contains(name)) continue;
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) Files.delete(file);
+                } catch (NoSuchFileException ignored) {
+                    // already gone
+                }
+            }
+        }
+    }
+}
@@ -1,95 +1,506 @@
 import java.util.*;
-import java.util.stream.Collectors;
 
+// Thread-safe: every read and write holds the student's own monitor, so edits to different
+// students never contend and a caller can hold the monitor to read several values consistently.
 public class Student {
-    private String name;
-    private Map<String, List<Integer>> subjectGrades;
-    private Map<String, Double> subjectWeights;
+    private static final int[] NO_INTS = new int[0];
+    private static final double[] NO_WEIGHTS = new double[0];
+    private static final SubjectGrades[] NO_GRADES = new SubjectGrades[0];
+    // Above this many subjects, slots are found through slotIndex instead of a scan.
+    private static final int LINEAR_SLOTS = 8;
+
+    private final String name;
+    // Registry key (lower-cased name), derived once.
+    private final String key;
+    // Subjects are SubjectDictionary ids. Every subject with a weight or grades has a slot in the
+    // parallel arrays below, in the order it was first seen; graded lists the slots that have
+    // grades in the order their first grade arrived, which is the order every view reports.
+    private int[] slotIds = NO_INTS;
+    private double[] weights = NO_WEIGHTS;
+    private SubjectGrades[] grades = NO_GRADES;
+    private int slotCount;
+    private int[] graded = NO_INTS;
+    private int gradedCount;
+    // Open-addressed id -> slot + 1 table, built once a student has more than LINEAR_SLOTS subjects.
+    private int[] slotIndex;
+    // Running aggregates over all graded subjects, kept in step by every change to grades or
+    // weights. The weighted sums are hi + lo pairs (see share), so bulk and one-at-a-time loads
+    // of the same grades read the same weighted average.
+    private long totalSum;
+    private long totalCount;
+    private double weightedSum;
+    private double weightedSumLow;
+    private double totalWeight;
+    private double totalWeightLow;
+    // Bumped by every change to grades or weights, so views can cache what they derive from it.
+    private long version;
     public Student(String name) {
         this.name = name.trim();
-        this.subjectGrades = new HashMap<>();
-        this.subjectWeights = new HashMap<>();
+        this.key = this.name.toLowerCase();
     }
     public String getName() { return name; }
 
-    public void addGrade(String subject, int grade) {
-        subject = subject.trim();
+    // Same as StudentRegistry.keyOf(getName()).
+    public String getKey() { return key; }
+
+    public synchronized long getVersion() { return version; }
+
+    public synchronized void addGrade(String subject, int grade) {
         if (grade < 0 || grade > 100) throw new IllegalArgumentException("Grade must be 0-100");
-        subjectGrades.computeIfAbsent(subject, k -> new ArrayList<>()).add(grade);
-        subjectWeights.putIfAbsent(subject, 1.0);
+        int slot = slotFor(SubjectDictionary.id(subject.trim()));
+        if (grades[slot] != null) share(slot, -1);
+        gradesFor(slot).add(grade);
+        share(slot, 1);
+        totalSum += grade;
+        totalCount++;
+        version++;
     }
 
     public void setSubjectWeight(String subject, double weight) {
         if (weight <= 0) throw new IllegalArgumentException("Weight must be positive");
-        subjectWeights.put(subject.trim(), weight);
+        setSubjectWeight(SubjectDictionary.id(subject.trim()), weight);
+    }
+
+    synchronized void setSubjectWeight(int subjectId, double weight) {
+        if (weight <= 0) throw new IllegalArgumentException("Weight must be positive");
+        setWeight(slotFor(subjectId), weight);
+        version++;
+    }
+
+    public synchronized double getSubjectWeight(String subject) {
+        int slot = slotOf(subject);
+        return slot < 0 ? 1.0 : weights[slot];
+    }
+
+    public synchronized List<Integer> getGrades(String subject) {
+        SubjectGrades g = gradesOf(subject);
+        return g == null ? Collections.emptyList() : g.asList();
+    }
+
+    // Read-only view of the graded subjects in graded order. It shares the append-only slotIds and
+    // graded arrays up to the current count, so it is safe to iterate while other threads add
+    // grades and does not see subjects added later.
+    public synchronized Set<String> getSubjects() {
+        return gradedCount == 0 ? Collections.emptySet() : new SubjectSet(slotIds, graded, gradedCount);
+    }
+
+    private static final class SubjectSet extends AbstractSet<String> {
+        private final int[] slotIds;
+        private final int[] graded;
+        private final int size;
+
+        SubjectSet(int[] slotIds, int[] graded, int size) {
+            this.slotIds = slotIds;
+            this.graded = graded;
+            this.size = size;
+        }
+
+        @Override public int size() { return size; }
+
+        @Override public boolean contains(Object o) {
+            int id = o instanceof String ? SubjectDictionary.find((String) o) : -1;
+            if (id < 0) return false;
+            for (int i = 0; i < size; i++) if (slotIds[graded[i]] == id) return true;
+            return false;
+        }
+
+        @Override public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int i;
+                @Override public boolean hasNext() { return i < size; }
+                @Override public String next() {
+                    if (i >= size) throw new NoSuchElementException();
+                    return SubjectDictionary.name(slotIds[graded[i++]]);
+                }
+            };
+        }
+    }
+
+    public synchronized OptionalDouble getSubjectAverage(String subject) {
+        SubjectGrades g = gradesOf(subject);
+        if (g == null) return OptionalDouble.empty();
+        return OptionalDouble.of(g.average());
+    }
+
+    public synchronized OptionalInt getSubjectHighest(String subject) {
+        SubjectGrades g = gradesOf(subject);
+        if (g == null) return OptionalInt.empty();
+        return OptionalInt.of(g.max());
+    }
+
+    public synchronized OptionalInt getSubjectLowest(String subject) {
+        SubjectGrades g = gradesOf(subject);
+        if (g == null) return OptionalInt.empty();
+        return OptionalInt.of(g.min());
+    }
+    public synchronized OptionalDouble getOverallAverage() {
+        if (totalCount == 0) return OptionalDouble.empty();
+        return OptionalDouble.of((double) totalSum / totalCount);
+    }
+    public synchronized OptionalDouble getWeightedAverage() {
+        if (gradedCount == 0) return OptionalDouble.empty();
+        return OptionalDouble.of(weightedSum / totalWeight);
+    }
+
+    // Appends a run of grades to one subject with a single range check, as if addGrade were called for each.
+    void appendGrades(String subject, byte[] src, int off, int len) {
+        appendGrades(SubjectDictionary.id(subject.trim()), src, off, len);
+    }
+
+    synchronized void appendGrades(int subjectId, byte[] src, int off, int len) {
+        if (len == 0) return;
+        for (int i = off; i < off + len; i++) {
+            if (src[i] < 0 || src[i] > 100) throw new IllegalArgumentException("Grade must be 0-100");
+        }
+        int slot = slotFor(subjectId);
+        if (grades[slot] != null) share(slot, -1);
+        SubjectGrades g = gradesFor(slot);
+        long before = g.sum();
+        g.addAll(src, off, len);
+        share(slot, 1);
+        totalSum += g.sum() - before;
+        totalCount += len;
+        version++;
+    }
+
+    // Everything a snapshot stores for this student, read in one hold of its monitor so each
+    // subject's grade count and grades agree even while another thread adds grades.
+    synchronized State state() {
+        return copyState();
+    }
+
+
+    // How mergeFrom settles the weight of a subject both students already have.
+    public enum WeightConflictPolicy {
+        OVERWRITE,     // the merged-in weight wins, as when a later file is loaded over the roster
+        KEEP_EXISTING, // this student's weight stays
+        MAX            // the larger of the two wins
+    }
+
+    // Replays another student's rows after this one's: weights are overwritten, grades appended in order.
+    // The other student is read under its own monitor first and the two are never held together,
+    // so threads merging students into each other cannot deadlock.
+    void appendAll(Student other) {
+        State st;
+        synchronized (other) { st = other.copyState(); }
+        synchronized (this) {
+            for (int i = 0; i < st.ids.length; i++) setWeight(slotFor(st.ids[i]), st.weights[i]);
+            for (int i = 0; i < st.gradedIds.length; i++) append(slotFor(st.gradedIds[i]), st.runs[i]);
+            version++;
+        }
+    }
+
+    // Merges a loaded copy of this student: each graded subject's grades are appended in one array
+    // copy and its weight settled by policy; a subject new to this student takes the loaded weight.
+    // The grades were range-checked when the other student took them, so nothing is validated
+    // again, and the whole merge is one change. Subjects the other student only has a weight for
+    // are ignored. Locking as in appendAll.
+    public void mergeFrom(Student other, WeightConflictPolicy policy) {
+        State st;
+        synchronized (other) { st = other.copyState(); }
+        synchronized (this) {
+            if (st.gradedIds.length == 0) return;
+            for (int i = 0; i < st.gradedIds.length; i++) {
+                double w = st.gradedWeights[i];
+                int slot = slotOf(st.gradedIds[i]);
+                if (slot < 0) slot = slotFor(st.gradedIds[i]);
+                else if (policy == WeightConflictPolicy.KEEP_EXISTING) w = weights[slot];
+                else if (policy == WeightConflictPolicy.MAX) w = Math.max(w, weights[slot]);
+                setWeight(slot, w);
+                append(slot, st.runs[i]);
+            }
+            version++;
+        }
+    }
+
+    // Caller holds this student's monitor and marks the change.
+    private void append(int slot, SubjectGrades.Run r) {
+        if (grades[slot] == null) startGrades(slot, r.count);
+        else share(slot, -1);
+        grades[slot].addAll(r);
+        share(slot, 1);
+        totalSum += r.sum;
+        totalCount += r.count;
+    }
+
+    // Caller holds this student's monitor and marks the change.
+    private void setWeight(int slot, double weight) {
+        if (grades[slot] == null) {
+            weights[slot] = weight;
+            return;
+        }
+        share(slot, -1);
+        weights[slot] = weight;
+        share(slot, 1);
+    }
+
+    // Adds (sign 1) or takes back (sign -1) a graded subject's average * weight and weight. Each
+    // sum is kept as hi + lo with an exact two-sum step, so a share taken back cancels to far
+    // below a double's last bit and the sums do not drift with how often a subject changed.
+    private void share(int slot, int sign) {
+        double w = sign * weights[slot];
+        double c = grades[slot].average() * w;
+        double s = weightedSum + c;
+        double lo = weightedSumLow + twoSumError(weightedSum, c, s);
+        weightedSum = s + lo;
+        weightedSumLow = twoSumError(s, lo, weightedSum);
+        s = totalWeight + w;
+        lo = totalWeightLow + twoSumError(totalWeight, w, s);
+        totalWeight = s + lo;
+        totalWeightLow = twoSumError(s, lo, totalWeight);
+    }
+
+    // The rounding error of s = a + b, exactly.
+    private static double twoSumError(double a, double b, double s) {
+        double bs = s - a;
+        return (a - (s - bs)) + (b - bs);
+    }
+
+    // Deep copy taken under this student's monitor, so it reflects one consistent state.
+    public Student copy() {
+        Student c = new Student(name);
+        c.appendAll(this);
+        return c;
+    }
+
+    // A student's subjects read under its monitor: every slot's weight in slot order, then the
+    // graded subjects' weights and grade runs in graded order, then the positions in ids of the
+    // slots that only have a weight. Runs share the append-only grade arrays, so nothing is copied
+    // until they are appended or written somewhere.
+    static final class State {
+        int[] ids;
+        double[] weights;
+        int[] gradedIds;
+        double[] gradedWeights;
+        SubjectGrades.Run[] runs;
+        int[] weightOnly;
     }
 
-    public double getSubjectWeight(String subject) {
-        return subjectWeights.getOrDefault(subject.trim(), 1.0);
+    // Caller holds this student's monitor.
+    private State copyState() {
+        State st = new State();
+        st.ids = Arrays.copyOf(slotIds, slotCount);
+        st.weights = Arrays.copyOf(weights, slotCount);
+        st.gradedIds = new int[gradedCount];
+        st.gradedWeights = new double[gradedCount];
+        st.runs = new SubjectGrades.Run[gradedCount];
+        for (int i = 0; i < gradedCount; i++) {
+            int slot = graded[i];
+            st.gradedIds[i] = slotIds[slot];
+            st.gradedWeights[i] = weights[slot];
+            st.runs[i] = grades[slot].run();
+        }
+        st.weightOnly = new int[slotCount - gradedCount];
+        for (int slot = 0, k = 0; slot < slotCount; slot++) {
+            if (grades[slot] == null) st.weightOnly[k++] = slot;
+        }
+        return st;
+    }
+
+    private SubjectGrades gradesOf(String subject) {
+        int slot = slotOf(subject);
+        return slot < 0 ? null : grades[slot];
+    }
+
+    private int slotOf(String subject) {
+        int id = SubjectDictionary.find(subject.trim());
+        return id < 0 ? -1 : slotOf(id);
     }
 
-    public List<Integer> getGrades(String subject) {
-        return subjectGrades.getOrDefault(subject.trim(), Collections.emptyList());
+    private int slotOf(int id) {
+        if (slotIndex == null) {
+            for (int i = 0; i < slotCount; i++) if (slotIds[i] == id) return i;
+            return -1;
+        }
+        int mask = slotIndex.length - 1;
+        for (int h = hash(id) & mask; ; h = (h + 1) & mask) {
+            int v = slotIndex[h];
+            if (v == 0) return -1;
+            if (slotIds[v - 1] == id) return v - 1;
+        }
     }
 
-    public Set<String> getSubjects() { return Collections.unmodifiableSet(subjectGrades.keySet()); }
+    // Finds or adds the subject's slot; a new subject starts with the default weight 1.0.
+    private int slotFor(int id) {
+        int slot = slotOf(id);
+        if (slot >= 0) return slot;
+        if (slotCount == slotIds.length) {
+            int n = Math.max(4, slotCount * 2);
+            slotIds = Arrays.copyOf(slotIds, n);
+            weights = Arrays.copyOf(weights, n);
+            grades = Arrays.copyOf(grades, n);
+        }
+        slot = slotCount++;
+        slotIds[slot] = id;
+        weights[slot] = 1.0;
+        if (slotIndex != null && slotCount * 2 <= slotIndex.length) indexSlot(slotIndex, slot);
+        else if (slotCount > LINEAR_SLOTS) {
+            slotIndex = new int[Integer.highestOneBit(slotCount) * 4];
+            for (int i = 0; i < slotCount; i++) indexSlot(slotIndex, i);
+        }
+        return slot;
+    }
 
-    public OptionalDouble getSubjectAverage(String subject) {
-        List<Integer> g = getGrades(subject);
-        if (g.isEmpty()) return OptionalDouble.empty();
-        return OptionalDouble.of(g.stream().mapToInt(Integer::intValue).average().orElse(0.0));
+    private void indexSlot(int[] table, int slot) {
+        int mask = table.length - 1;
+        int h = hash(slotIds[slot]) & mask;
+        while (table[h] != 0) h = (h + 1) & mask;
+        table[h] = slot + 1;
     }
 
-    public OptionalInt getSubjectHighest(String subject) {
-        List<Integer> g = getGrades(subject);
-        if (g.isEmpty()) return OptionalInt.empty();
-        return OptionalInt.of(g.stream().mapToInt(Integer::intValue).max().getAsInt());
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 
-    public OptionalInt getSubjectLowest(String subject) {
-        List<Integer> g = getGrades(subject);
-        if (g.isEmpty()) return OptionalInt.empty();
-        return OptionalInt.of(g.stream().mapToInt(Integer::intValue).min().getAsInt());
+    private SubjectGrades gradesFor(int slot) {
+        SubjectGrades g = grades[slot];
+        return g != null ? g : startGrades(slot, 4);
     }
-    public OptionalDouble getOverallAverage() {
-        List<Integer> all = subjectGrades.values().stream().flatMap(List::stream).collect(Collectors.toList());
-        if (all.isEmpty()) return OptionalDouble.empty();
-        return OptionalDouble.of(all.stream().mapToInt(Integer::intValue).average().orElse(0.0));
+
+    // Adds the slot to graded.
+    private SubjectGrades startGrades(int slot, int capacity) {
+        SubjectGrades g = new SubjectGrades(capacity);
+        grades[slot] = g;
+        if (gradedCount == graded.length) graded = Arrays.copyOf(graded, Math.max(4, gradedCount * 2));
+        graded[gradedCount++] = slot;
+        return g;
     }
-    public OptionalDouble getWeightedAverage() {
-        double totalWeighted = 0.0;
-        double totalWeight = 0.0;
-        for (String subject : subjectGrades.keySet()) {
-            OptionalDouble subjAvg = getSubjectAverage(subject);
-            if (subjAvg.isPresent()) {
-                double w = getSubjectWeight(subject);
-                totalWeighted += subjAvg.getAsDouble() * w;
-                totalWeight += w;
+
+    // Recomputes every aggregate from the stored grade bytes alone and throws if a running value
+    // has drifted.
+    public synchronized void verifyAggregates() {
+        long sum = 0;
+        long count = 0;
+        double weighted = 0.0;
+        double weight = 0.0;
+        for (int i = 0; i < gradedCount; i++) {
+            int slot = graded[i];
+            SubjectGrades g = grades[slot];
+            long s = 0;
+            int lo = Integer.MAX_VALUE;
+            int hi = Integer.MIN_VALUE;
+            for (int k = 0; k < g.count(); k++) {
+                int v = g.get(k);
+                s += v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+            if (g.count() == 0 || s != g.sum() || lo != g.min() || hi != g.max()) {
+                throw new IllegalStateException("Subject aggregate mismatch for " + name + " in " + SubjectDictionary.name(slotIds[slot])
+                        + ": sum " + g.sum() + "/" + s + ", min " + g.min() + "/" + lo + ", max " + g.max() + "/" + hi);
             }
+            sum += s;
+            count += g.count();
+            weighted += (double) s / g.count() * weights[slot];
+            weight += weights[slot];
+        }
+        if (sum != totalSum || count != totalCount) {
+            throw new IllegalStateException("Overall aggregate mismatch for " + name + ": sum " + totalSum + "/" + sum + ", count " + totalCount + "/" + count);
+        }
+        if (Math.abs(weight - totalWeight) > 1e-9 * weight
+                || (gradedCount > 0 && Math.abs(weighted / weight - weightedSum / totalWeight) > 1e-9)) {
+            throw new IllegalStateException("Weighted aggregate mismatch for " + name + ": running " + weightedSum + "/" + totalWeight
+                    + ", stored grades give " + weighted + "/" + weight);
+        }
+    }
+
+    public synchronized String subjectSummary(String subject) {
+        int slot = slotOf(subject);
+        SubjectGrades g = slot < 0 ? null : grades[slot];
+        if (g == null) return "(no grades)";
+        return String.format("Grades: %s | avg: %.2f | high: %s | low: %s | weight: %.2f",
+                g.asList(), g.average(), String.valueOf(g.max()), String.valueOf(g.min()), weights[slot]);
+    }
+
+    // One subject's line in the details view. grades is a snapshot view over the packed array, so
+    // nothing is copied or formatted until a cell shows it.
+    static final class SubjectRow {
+        final String subject;
+        final List<Integer> grades;
+        final double average;
+        final int highest;
+        final int lowest;
+        final double weight;
+
+        SubjectRow(String subject, SubjectGrades g, double weight) {
+            this.subject = subject;
+            this.grades = g.asList();
+            this.average = g.average();
+            this.highest = g.max();
+            this.lowest = g.min();
+            this.weight = weight;
         }
-        if (totalWeight == 0.0) return OptionalDouble.empty();
-        return OptionalDouble.of(totalWeighted / totalWeight);
     }
-    public String subjectSummary(String subject) {
-        List<Integer> g = getGrades(subject);
-        if (g.isEmpty()) return "(no grades)";
-        String gradesStr = g.toString();
-        String avg = getSubjectAverage(subject).isPresent() ? String.format("%.2f", getSubjectAverage(subject).getAsDouble()) : "-";
-        String high = getSubjectHighest(subject).isPresent() ? String.valueOf(getSubjectHighest(subject).getAsInt()) : "-";
-        String low = getSubjectLowest(subject).isPresent() ? String.valueOf(getSubjectLowest(subject).getAsInt()) : "-";
-        return String.format("Grades: %s | avg: %s | high: %s | low: %s | weight: %.2f", gradesStr, avg, high, low, getSubjectWeight(subject));
+
+    // Graded subjects in insertion order, read in one pass.
+    synchronized List<SubjectRow> subjectRows() {
+        List<SubjectRow> rows = new ArrayList<>(gradedCount);
+        for (int i = 0; i < gradedCount; i++) {
+            int slot = graded[i];
+            rows.add(new SubjectRow(SubjectDictionary.name(slotIds[slot]), grades[slot], weights[slot]));
+        }
+        return rows;
     }
 
-        public List<String> toCsvLines() {
-        List<String> lines = new ArrayList<>();
-        for (String subject : subjectGrades.keySet()) {
-            String gradesJoin = subjectGrades.get(subject).stream().map(Object::toString).collect(Collectors.joining(";"));
-            double weight = getSubjectWeight(subject);
-            lines.add(String.format("%s,%s,%s,%.2f", escapeCsv(name), escapeCsv(subject), gradesJoin, weight));
+    public synchronized List<String> toCsvLines() {
+        List<String> lines = new ArrayList<>(gradedCount);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < gradedCount; i++) {
+            sb.setLength(0);
+            appendCsvLine(sb, graded[i]);
+            lines.add(sb.toString());
         }
         return lines;
     }
 
+    // Same rows as toCsvLines, each followed by a newline, appended to a caller's buffer.
+    synchronized void appendCsvLines(StringBuilder sb) {
+        for (int i = 0; i < gradedCount; i++) {
+            appendCsvLine(sb, graded[i]);
+            sb.append('\n');
+        }
+    }
+
+    private void appendCsvLine(StringBuilder sb, int slot) {
+        SubjectGrades g = grades[slot];
+        sb.append(escapeCsv(name)).append(',').append(escapeCsv(SubjectDictionary.name(slotIds[slot]))).append(',');
+        for (int i = 0; i < g.count(); i++) {
+            if (i > 0) sb.append(';');
+            sb.append(g.get(i));
+        }
+        sb.append(',');
+        FixedPoint.append2(sb, weights[slot]);
+    }
+
+    // The summary export's fields for one student, filled in one pass by summarize.
+    static final class Summary {
+        String name;
+        boolean graded;
+        double overall;
+        double weighted;
+        int subjects;
+        int highest;
+        int lowest;
+    }
+
+    synchronized void summarize(Summary out) {
+        out.name = name;
+        out.graded = totalCount > 0;
+        out.overall = (double) totalSum / totalCount;
+        out.weighted = getWeightedAverage().orElse(Double.NaN);
+        out.subjects = gradedCount;
+        int highest = Integer.MIN_VALUE;
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < gradedCount; i++) {
+            SubjectGrades g = grades[graded[i]];
+            if (g.max() > highest) highest = g.max();
+            if (g.min() < lowest) lowest = g.min();
+        }
+        out.highest = highest;
+        out.lowest = lowest;
+    }
+
     private String escapeCsv(String s) {
         if (s.contains(",") || s.contains("\"")) {
             return "\"" + s.replace("\"", "\"\"") + "\"";
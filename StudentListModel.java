@@ -0,0 +1,301 @@
+import javax.swing.AbstractListModel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// List model for the student roster. Rows are appended in batches with one event per batch,
+// looked up and removed by lower-cased key in O(log n), and sorted by name or by any per-student
+// value without moving the backing rows: the view is a permutation of row numbers (view slots)
+// plus a Fenwick tree counting the live rows per slot, so a removed row just drops out of the
+// count. Removed rows are compacted away once they outnumber the live ones. A filter hides rows
+// the same way: they stay in place and only drop out of the count.
+public class StudentListModel extends AbstractListModel<String> {
+    private static final int MIN_COMPACT = 1024;
+
+    private String[] names = new String[16];
+    private String[] keys = new String[16];  // null once the row has been removed
+    private boolean[] shown = new boolean[16];
+    private int rows;
+    private final Map<String, Integer> rowOfKey = new HashMap<>();
+
+    private int[] order = new int[16];       // view slot -> backing row
+    private int[] slotOf = new int[16];      // backing row -> view slot
+    private int[] tree = new int[17];        // Fenwick tree over view slots
+    private int slots;
+    private int live;
+    private int visible;
+
+    private Predicate<String> filter;
+
+    private ToDoubleFunction<String> sortValue;
+    private boolean sortByName;
+    private boolean descending;
+
+    @Override
+    public int getSize() { return visible; }
+
+    // Rows in the roster, including those the filter hides.
+    public int getTotalSize() { return live; }
+
+    public boolean isFiltered() { return filter != null; }
+
+    @Override
+    public String getElementAt(int index) { return names[order[slotAt(index)]]; }
+
+    public String getKeyAt(int index) { return keys[order[slotAt(index)]]; }
+
+    public boolean containsKey(String key) { return rowOfKey.containsKey(key); }
+
+    public int indexOfKey(String key) {
+        Integer row = rowOfKey.get(key);
+        return row == null || !shown[row] ? -1 : prefix(slotOf[row]) - 1;
+    }
+
+    public void addElement(String name) { addAll(Collections.singletonList(name)); }
+
+    // Appends names whose keys are not present yet and fires a single event for the batch.
+    public void addAll(Collection<String> batch) {
+        int first = visible;
+        ensureCapacity(rows + batch.size());
+        for (String name : batch) append(name, name.toLowerCase());
+        added(first);
+    }
+
+    // Same as addAll, using the keys the students already carry.
+    public void addStudents(Collection<Student> batch) {
+        int first = visible;
+        ensureCapacity(rows + batch.size());
+        for (Student s : batch) append(s.getName(), s.getKey());
+        added(first);
+    }
+
+    private void append(String name, String key) {
+        if (rowOfKey.containsKey(key)) return;
+        int row = rows++;
+        int slot = slots++;
+        names[row] = name;
+        keys[row] = key;
+        rowOfKey.put(key, row);
+        order[slot] = row;
+        slotOf[row] = slot;
+        shown[row] = filter == null || filter.test(key);
+        if (shown[row]) { add(slot, 1); visible++; }
+        live++;
+    }
+
+    private void added(int first) {
+        if (visible == first) return;
+        if (isSorted()) {
+            rebuildView();
+            if (first > 0) fireContentsChanged(this, 0, first - 1);
+        }
+        fireIntervalAdded(this, first, visible - 1);
+    }
+
+    public boolean removeKey(String key) {
+        Integer row = rowOfKey.remove(key);
+        if (row == null) return false;
+        int slot = slotOf[row];
+        live--;
+        names[row] = null;
+        keys[row] = null;
+        if (shown[row]) {
+            int index = prefix(slot) - 1;
+            add(slot, -1);
+            visible--;
+            shown[row] = false;
+            fireIntervalRemoved(this, index, index);
+        }
+        if (rows - live > MIN_COMPACT && rows - live > live) compact();
+        return true;
+    }
+
+    public void clear() {
+        int size = visible;
+        Arrays.fill(names, 0, rows, null);
+        Arrays.fill(keys, 0, rows, null);
+        Arrays.fill(shown, 0, rows, false);
+        Arrays.fill(tree, 0);
+        rowOfKey.clear();
+        rows = 0;
+        slots = 0;
+        live = 0;
+        visible = 0;
+        if (size > 0) fireIntervalRemoved(this, 0, size - 1);
+    }
+
+    // Shows only rows whose key passes the filter, or all rows for null. Rows added later are
+    // tested as they arrive. If the caller already has the matching keys, e.g. from an index,
+    // passing them skips testing every row.
+    public void setFilter(Predicate<String> filter, Collection<String> matchingKeys) {
+        int before = visible;
+        this.filter = filter;
+        if (filter == null) {
+            for (int row = 0; row < rows; row++) shown[row] = keys[row] != null;
+        } else if (matchingKeys != null) {
+            Arrays.fill(shown, 0, rows, false);
+            for (String key : matchingKeys) {
+                Integer row = rowOfKey.get(key);
+                if (row != null) shown[row] = true;
+            }
+        } else {
+            for (int row = 0; row < rows; row++) shown[row] = keys[row] != null && filter.test(keys[row]);
+        }
+        rebuildTree();
+        visible = prefix(slots - 1);
+        if (before > 0) fireIntervalRemoved(this, 0, before - 1);
+        if (visible > 0) fireIntervalAdded(this, 0, visible - 1);
+    }
+
+    public void sortByInsertion() {
+        sortValue = null;
+        sortByName = false;
+        resort();
+    }
+
+    public void sortByName() {
+        sortValue = null;
+        sortByName = true;
+        resort();
+    }
+
+    // Sorts by a value looked up once per row, e.g. a student's weighted average.
+    public void sortByValue(ToDoubleFunction<String> valueOfKey, boolean descending) {
+        this.sortValue = valueOfKey;
+        this.sortByName = false;
+        this.descending = descending;
+        resort();
+    }
+
+    // Re-applies the current ordering, e.g. after the sort values changed.
+    public void resort() {
+        rebuildView();
+        if (visible > 0) fireContentsChanged(this, 0, visible - 1);
+    }
+
+    private boolean isSorted() { return sortByName || sortValue != null; }
+
+    private void rebuildView() {
+        int n = 0;
+        for (int row = 0; row < rows; row++) {
+            if (keys[row] != null) order[n++] = row;
+        }
+        if (sortByName) {
+            sortRows(order, n, (a, b) -> {
+                int c = String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]);
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+        } else if (sortValue != null) {
+            double[] values = new double[rows];
+            for (int i = 0; i < n; i++) values[order[i]] = sortValue.applyAsDouble(keys[order[i]]);
+            int sign = descending ? -1 : 1;
+            sortRows(order, n, (a, b) -> {
+                int c = sign * Double.compare(values[a], values[b]);
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+        }
+        for (int slot = 0; slot < n; slot++) slotOf[order[slot]] = slot;
+        slots = n;
+        rebuildTree();
+    }
+
+    // Drops removed rows from the backing arrays, keeping insertion order, and renumbers the view
+    // in place so the visible order, and with it every index listeners know, stays the same.
+    private void compact() {
+        int[] moved = new int[rows];
+        int n = 0;
+        for (int row = 0; row < rows; row++) {
+            if (keys[row] == null) { moved[row] = -1; continue; }
+            moved[row] = n;
+            names[n] = names[row];
+            keys[n] = keys[row];
+            shown[n] = shown[row];
+            rowOfKey.put(keys[n], n);
+            n++;
+        }
+        Arrays.fill(names, n, rows, null);
+        Arrays.fill(keys, n, rows, null);
+        Arrays.fill(shown, n, rows, false);
+        rows = n;
+        int kept = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            int row = moved[order[slot]];
+            if (row < 0) continue;
+            order[kept] = row;
+            slotOf[row] = kept++;
+        }
+        slots = kept;
+        rebuildTree();
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= names.length) return;
+        int cap = Math.max(needed, names.length * 2);
+        names = Arrays.copyOf(names, cap);
+        keys = Arrays.copyOf(keys, cap);
+        shown = Arrays.copyOf(shown, cap);
+        order = Arrays.copyOf(order, cap);
+        slotOf = Arrays.copyOf(slotOf, cap);
+        tree = new int[cap + 1];
+        rebuildTree();
+    }
+
+    private void rebuildTree() {
+        Arrays.fill(tree, 0);
+        for (int slot = 0; slot < slots; slot++) {
+            if (shown[order[slot]]) tree[slot + 1] = 1;
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+    }
+
+    private void add(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    private int prefix(int slot) {
+        int sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    // Slot holding the index-th visible row.
+    private int slotAt(int index) {
+        if (index < 0 || index >= visible) throw new ArrayIndexOutOfBoundsException(index + " >= " + visible);
+        int pos = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] < remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    private interface RowComparator { int compare(int a, int b); }
+
+    // Bottom-up merge sort over row numbers, avoiding a boxed Integer[] and Comparator.
+    private static void sortRows(int[] a, int n, RowComparator cmp) {
+        int[] tmp = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, n);
+                if (cmp.compare(a[mid - 1], a[mid]) <= 0) continue;
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) tmp[k++] = cmp.compare(a[i], a[j]) <= 0 ? a[i++] : a[j++];
+                while (i < mid) tmp[k++] = a[i++];
+                while (j < hi) tmp[k++] = a[j++];
+                System.arraycopy(tmp, lo, a, lo, hi - lo);
+            }
+        }
+    }
+}
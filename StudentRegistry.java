@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The roster, safe to read and mutate from any thread. Students are keyed by trimmed, lower-cased
+// name in a ConcurrentHashMap; each Student guards its own state, so edits to different students
+// never contend. Reads through students() are weakly consistent across the roster but consistent
+// per student; snapshot() returns deep copies that later edits cannot touch.
+public class StudentRegistry {
+    // Called on the thread that made the change, after it has been applied.
+    public interface Listener {
+        default void studentAdded(Student s) {}
+        default void studentRemoved(Student s) {}
+        default void studentChanged(Student s) {}
+    }
+
+    // Smallest number of loaded students worth a combine partition of its own.
+    private static final int COMBINE_MIN_PARTITION = 4096;
+
+    private final ConcurrentHashMap<String, Student> students = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public static String keyOf(String name) { return name.trim().toLowerCase(); }
+
+    public void addListener(Listener l) { listeners.add(l); }
+    public void removeListener(Listener l) { listeners.remove(l); }
+
+    public Student get(String name) { return students.get(keyOf(name)); }
+    // For callers that already hold a key (Student.getKey(), a list model's key column).
+    public Student getByKey(String key) { return students.get(key); }
+    public boolean contains(String name) { return students.containsKey(keyOf(name)); }
+    public int size() { return students.size(); }
+    public boolean isEmpty() { return students.isEmpty(); }
+
+    // Bumped on every change once the listeners have seen it; readers can compare it to skip work
+    // when nothing moved.
+    public long version() { return version.get(); }
+
+    // Live, unmodifiable view of the roster.
+    public Collection<Student> students() { return Collections.unmodifiableCollection(students.values()); }
+
+    public List<Student> snapshot() {
+        List<Student> out = new ArrayList<>(students.size());
+        for (Student s : students.values()) out.add(s.copy());
+        return out;
+    }
+
+    // Returns the new student, or null if one with the same name already exists.
+    public Student addStudent(String name) {
+        Student s = new Student(name);
+        if (students.putIfAbsent(keyOf(name), s) != null) return null;
+        for (Listener l : listeners) l.studentAdded(s);
+        version.incrementAndGet();
+        return s;
+    }
+
+    public void addGrade(String name, String subject, int grade) {
+        Student s = require(name);
+        s.addGrade(subject, grade);
+        changed(s);
+    }
+
+    public void setSubjectWeight(String name, String subject, double weight) {
+        Student s = require(name);
+        s.setSubjectWeight(subject, weight);
+        changed(s);
+    }
+
+    public Student removeStudent(String name) {
+        Student s = students.remove(keyOf(name));
+        if (s == null) return null;
+        for (Listener l : listeners) l.studentRemoved(s);
+        version.incrementAndGet();
+        return s;
+    }
+
+    // Adds loaded students, or merges them into existing ones with the same name: grades are
+    // appended and the loaded weights win. Each merge is atomic with respect to removal.
+    public void merge(Collection<Student> loaded) { merge(loaded, Student.WeightConflictPolicy.OVERWRITE); }
+
+    // As above, with policy deciding the weight of a subject the existing student already has.
+    public void merge(Collection<Student> loaded, Student.WeightConflictPolicy policy) {
+        for (Student s : loaded) {
+            Student[] merged = new Student[1];
+            Student current = students.compute(s.getKey(), (k, existing) -> {
+                if (existing == null) return s;
+                existing.mergeFrom(s, policy);
+                merged[0] = existing;
+                return existing;
+            });
+            if (merged[0] != null) {
+                for (Listener l : listeners) l.studentChanged(current);
+            } else {
+                for (Listener l : listeners) l.studentAdded(current);
+            }
+            version.incrementAndGet();
+        }
+    }
+
+    // Same result as merging each roster in turn. The rosters are first folded into one student
+    // per name on pool (see combine), then that goes through merge, so listeners see adds in
+    // first-seen order exactly as a sequential merge would. The loaded students may be reused.
+    public void mergeAll(List<? extends Collection<Student>> rosters, Student.WeightConflictPolicy policy, ForkJoinPool pool) {
+        merge(combine(rosters, policy, pool), policy);
+    }
+
+    // Folds rosters into one student per name, in the order each name was first seen. Names are
+    // split by hash into one partition per task, and a partition folds its students in roster
+    // order, so grades keep their file order without any locking between tasks. Repeats are merged
+    // into the first loaded instance, as a sequential merge would for a new name; for a name
+    // already on the roster they go into a fresh student that, like the roster's, only takes
+    // graded subjects, so the policy settles every weight as a sequential merge would.
+    List<Student> combine(List<? extends Collection<Student>> rosters, Student.WeightConflictPolicy policy, ForkJoinPool pool) {
+        int total = 0;
+        for (Collection<Student> r : rosters) total += r.size();
+        Student[] all = new Student[total];
+        int n = 0;
+        for (Collection<Student> r : rosters) for (Student s : r) all[n++] = s;
+        if (rosters.size() < 2) return Arrays.asList(all);
+
+        int parts = Math.max(1, Math.min(pool.getParallelism() * 4, total / COMBINE_MIN_PARTITION));
+        int[] partOf = new int[n];
+        int[] sizes = new int[parts];
+        for (int i = 0; i < n; i++) {
+            int h = all[i].getKey().hashCode();
+            sizes[partOf[i] = Math.floorMod(h ^ (h >>> 16), parts)]++;
+        }
+        int[][] members = new int[parts][];
+        for (int p = 0; p < parts; p++) members[p] = new int[sizes[p]];
+        int[] fill = new int[parts];
+        for (int i = 0; i < n; i++) members[partOf[i]][fill[partOf[i]]++] = i;
+
+        // Each partition writes only the first-seen index of its own names, so out needs no lock.
+        Student[] out = new Student[n];
+        pool.invoke(new FoldTask(all, members, out, policy, 0, parts, students));
+        List<Student> combined = new ArrayList<>(n);
+        for (Student s : out) if (s != null) combined.add(s);
+        return combined;
+    }
+
+    // Folds partitions [lo, hi), splitting in halves down to one partition per task.
+    private static final class FoldTask extends RecursiveAction {
+        private final Student[] all;
+        private final int[][] members;
+        private final Student[] out;
+        private final Student.WeightConflictPolicy policy;
+        private final int lo, hi;
+        private final Map<String, Student> roster;
+
+        FoldTask(Student[] all, int[][] members, Student[] out, Student.WeightConflictPolicy policy, int lo, int hi, Map<String, Student> roster) {
+            this.all = all;
+            this.members = members;
+            this.out = out;
+            this.policy = policy;
+            this.lo = lo;
+            this.hi = hi;
+            this.roster = roster;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new FoldTask(all, members, out, policy, lo, mid, roster), new FoldTask(all, members, out, policy, mid, hi, roster));
+                return;
+            }
+            Map<String, Integer> first = new HashMap<>(members[lo].length * 2);
+            for (int i : members[lo]) {
+                Integer f = first.putIfAbsent(all[i].getKey(), i);
+                if (f == null) {
+                    out[i] = all[i];
+                    continue;
+                }
+                if (out[f] == all[f] && roster.containsKey(all[f].getKey())) {
+                    Student fresh = new Student(all[f].getName());
+                    fresh.mergeFrom(all[f], policy);
+                    out[f] = fresh;
+                }
+                out[f].mergeFrom(all[i], policy);
+            }
+        }
+    }
+
+    private Student require(String name) {
+        Student s = students.get(keyOf(name));
+        if (s == null) throw new IllegalArgumentException("Unknown student: " + name);
+        return s;
+    }
+
+    private void changed(Student s) {
+        for (Listener l : listeners) l.studentChanged(s);
+        version.incrementAndGet();
+    }
+}
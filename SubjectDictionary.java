@@ -0,0 +1,40 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide dictionary of subject names. A name gets a small int id the first time it is
+// seen and keeps it for the life of the process; ids are dense from 0, so a student stores ids
+// rather than strings and every student shares one String per subject. Rosters have tens of
+// subjects, so nothing is ever evicted. Callers pass names already trimmed.
+final class SubjectDictionary {
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    // Written before the id is published through IDS, so anyone holding an id can read its name.
+    private static volatile String[] names = new String[64];
+    private static int size;
+
+    private SubjectDictionary() {}
+
+    static int id(String subject) {
+        Integer id = IDS.get(subject);
+        return id != null ? id : register(subject);
+    }
+
+    // Returns -1 for a name that has never been registered.
+    static int find(String subject) {
+        Integer id = IDS.get(subject);
+        return id == null ? -1 : id;
+    }
+
+    static String name(int id) { return names[id]; }
+
+    static synchronized int size() { return size; }
+
+    private static synchronized int register(String subject) {
+        Integer id = IDS.get(subject);
+        if (id != null) return id;
+        String[] n = names;
+        if (size == n.length) names = n = Arrays.copyOf(n, size * 2);
+        n[size] = subject;
+        IDS.put(subject, size);
+        return size++;
+    }
+}
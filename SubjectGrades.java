@@ -0,0 +1,89 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Grades for one subject. Grades are 0-100, so they are packed one per byte;
+// count, sum, min and max are kept as grades are appended.
+class SubjectGrades {
+    private byte[] grades;
+    private int count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    SubjectGrades(int capacity) { grades = new byte[Math.max(1, capacity)]; }
+
+    void add(int grade) {
+        if (count == grades.length) grades = Arrays.copyOf(grades, count + (count >> 1) + 1);
+        grades[count++] = (byte) grade;
+        sum += grade;
+        if (grade < min) min = grade;
+        if (grade > max) max = grade;
+    }
+
+    // Callers validate the range; grades are appended as-is.
+    void addAll(byte[] src, int off, int len) {
+        if (len == 0) return;
+        if (count + len > grades.length) grades = Arrays.copyOf(grades, Math.max(count + len, count + (count >> 1) + 1));
+        System.arraycopy(src, off, grades, count, len);
+        for (int i = off; i < off + len; i++) {
+            int g = src[i];
+            sum += g;
+            if (g < min) min = g;
+            if (g > max) max = g;
+        }
+        count += len;
+    }
+
+    // Appends another subject's grades. They were range-checked when first added and their totals
+    // carry over, so this is one array copy.
+    void addAll(Run r) {
+        if (r.count == 0) return;
+        if (count + r.count > grades.length) grades = Arrays.copyOf(grades, Math.max(count + r.count, count + (count >> 1) + 1));
+        System.arraycopy(r.grades, 0, grades, count, r.count);
+        count += r.count;
+        sum += r.sum;
+        if (r.min < min) min = r.min;
+        if (r.max > max) max = r.max;
+    }
+
+    // Captured under the owner's monitor; [0, count) of the backing array never changes afterwards.
+    Run run() { return new Run(grades, count, sum, min, max); }
+
+    int count() { return count; }
+    long sum() { return sum; }
+    int min() { return min; }
+    int max() { return max; }
+    double average() { return (double) sum / count; }
+    int get(int i) { return grades[i]; }
+
+    // The backing array is append-only, so a view over (array, count) stays a stable snapshot.
+    List<Integer> asList() { return new GradeList(grades, count); }
+
+    static final class Run {
+        final byte[] grades;
+        final int count;
+        final long sum;
+        final int min;
+        final int max;
+        Run(byte[] grades, int count, long sum, int min, int max) {
+            this.grades = grades;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private static final class GradeList extends AbstractList<Integer> implements RandomAccess {
+        private final byte[] grades;
+        private final int size;
+        GradeList(byte[] grades, int size) { this.grades = grades; this.size = size; }
+        @Override public Integer get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            return Integer.valueOf(grades[index]);
+        }
+        @Override public int size() { return size; }
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+// Writes the per-student summary CSV (see CSVUtils.appendSummaryRow). Each worker formats a block
+// of students into one buffer, one pass per student, and encodes it to UTF-8; blocks are computed
+// a chunk at a time on a fork-join pool while the previous chunk is written, so output stays in
+// roster order, memory stays bounded by two chunks and the writer only copies bytes.
+public class SummaryExporter {
+    private static final int CHUNK = 16384;
+    private static final int BLOCK = 512;
+
+    private interface Sink { void write(byte[] bytes) throws IOException; }
+
+    private final ForkJoinPool pool;
+
+    public SummaryExporter() { this(ForkJoinPool.commonPool()); }
+
+    public SummaryExporter(ForkJoinPool pool) { this.pool = pool; }
+
+    // Writes to a sibling temp file and moves it into place, so a failed or cancelled export
+    // leaves an existing file untouched.
+    public void export(List<Student> students, Path file, CSVUtils.Progress progress) throws IOException {
+        long start = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                export(students, bytes -> {
+                    ByteBuffer buf = ByteBuffer.wrap(bytes);
+                    while (buf.hasRemaining()) ch.write(buf);
+                }, progress);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Metrics.histogram("export.summary").recordSince(start);
+            Metrics.counter("export.summary.students").add(students.size());
+            Metrics.counter("export.summary.bytes").add(Files.size(file));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public void export(List<Student> students, OutputStream out, CSVUtils.Progress progress) throws IOException {
+        export(students, out::write, progress);
+        out.flush();
+    }
+
+    private void export(List<Student> students, Sink sink, CSVUtils.Progress progress) throws IOException {
+        sink.write(CSVUtils.SUMMARY_HEADER.getBytes(StandardCharsets.UTF_8));
+        int total = students.size();
+        Future<byte[][]> next = total > 0 ? submit(students, 0) : null;
+        for (int lo = 0; lo < total; lo += CHUNK) {
+            byte[][] blocks = join(next);
+            next = lo + CHUNK < total ? submit(students, lo + CHUNK) : null;
+            for (byte[] block : blocks) sink.write(block);
+            if (progress != null) {
+                progress.update(Math.min(total, lo + CHUNK), total);
+                if (progress.isCancelled()) {
+                    if (next != null) next.cancel(false);
+                    throw new CancellationException("Export cancelled");
+                }
+            }
+        }
+    }
+
+    private Future<byte[][]> submit(List<Student> students, int lo) {
+        int hi = Math.min(students.size(), lo + CHUNK);
+        int blocks = (hi - lo + BLOCK - 1) / BLOCK;
+        return pool.submit(() -> IntStream.range(0, blocks).parallel()
+                .mapToObj(b -> format(students, lo + b * BLOCK, Math.min(hi, lo + (b + 1) * BLOCK)))
+                .toArray(byte[][]::new));
+    }
+
+    private static byte[] format(List<Student> students, int lo, int hi) {
+        StringBuilder sb = new StringBuilder((hi - lo) * 48);
+        Student.Summary summary = new Student.Summary();
+        for (int i = lo; i < hi; i++) {
+            students.get(i).summarize(summary);
+            CSVUtils.appendSummaryRow(sb, summary);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static <T> T join(Future<T> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Deterministic gradebooks for benchmarks: the same seed and sizes always produce the same
+// students, CSV lines and files, so runs on different machines measure the same work.
+// Every 16th name contains a comma and every 64th a quote, to exercise CSV quoting.
+public class SyntheticGradebook {
+    private final long seed;
+    private final int subjectsPerStudent;
+    private final int gradesPerSubject;
+    private final String[] subjects;
+
+    public SyntheticGradebook(long seed, int subjectsPerStudent, int gradesPerSubject) {
+        if (subjectsPerStudent <= 0 || gradesPerSubject < 0) throw new IllegalArgumentException("Invalid gradebook shape");
+        this.seed = seed;
+        this.subjectsPerStudent = subjectsPerStudent;
+        this.gradesPerSubject = gradesPerSubject;
+        this.subjects = new String[Math.max(32, subjectsPerStudent)];
+        for (int i = 0; i < subjects.length; i++) subjects[i] = String.format("Subject %02d", i);
+    }
+
+    public static String name(int index) {
+        if (index % 64 == 63) return "Student \"" + index + "\"";
+        if (index % 16 == 15) return "Doe, Student " + index;
+        return "Student " + index;
+    }
+
+    public Student student(int index) {
+        SplittableRandom r = random(index);
+        Student s = new Student(name(index));
+        int first = r.nextInt(subjects.length);
+        for (int k = 0; k < subjectsPerStudent; k++) {
+            String subject = subjects[(first + k) % subjects.length];
+            for (int g = 0; g < gradesPerSubject; g++) s.addGrade(subject, grade(r));
+            s.setSubjectWeight(subject, weight(r));
+        }
+        return s;
+    }
+
+    public List<Student> roster(int students) {
+        List<Student> out = new ArrayList<>(students);
+        for (int i = 0; i < students; i++) out.add(student(i));
+        return out;
+    }
+
+    // The rows CSVUtils.saveStudents would write for student(index), without building the student.
+    public List<String> csvLines(int index) {
+        SplittableRandom r = random(index);
+        List<String> out = new ArrayList<>(subjectsPerStudent);
+        String name = escape(name(index));
+        int first = r.nextInt(subjects.length);
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < subjectsPerStudent; k++) {
+            sb.setLength(0);
+            sb.append(name).append(',').append(subjects[(first + k) % subjects.length]).append(',');
+            for (int g = 0; g < gradesPerSubject; g++) {
+                if (g > 0) sb.append(';');
+                sb.append(grade(r));
+            }
+            sb.append(',').append(String.format("%.2f", weight(r)));
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    // Writes whole students until the file reaches targetBytes; returns the number of students.
+    public int writeCsv(Path file, long targetBytes) throws IOException {
+        long written = 0;
+        int students = 0;
+        try (BufferedWriter bw = Files.newBufferedWriter(file)) {
+            String header = "name,subject,grades,weight\n";
+            bw.write(header);
+            written += header.length();
+            while (written < targetBytes) {
+                for (String line : csvLines(students)) {
+                    bw.write(line);
+                    bw.write('\n');
+                    written += line.length() + 1;
+                }
+                students++;
+            }
+        }
+        return students;
+    }
+
+    private SplittableRandom random(int index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    private static int grade(SplittableRandom r) {
+        // Roughly bell-shaped around 70, clamped to the valid range.
+        int g = 40 + r.nextInt(31) + r.nextInt(31);
+        return Math.min(100, g);
+    }
+
+    private static double weight(SplittableRandom r) {
+        return 0.5 * (1 + r.nextInt(6));
+    }
+
+    private static String escape(String s) {
+        if (s.contains(",") || s.contains("\"")) return "\"" + s.replace("\"", "\"\"") + "\"";
+        return s;
+    }
+}
@@ -0,0 +1,60 @@
+import gradebook.bench.Gradebooks;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// The application side of gradebook.bench.Gradebooks; each method is the one call it names.
+public class BenchGradebooks implements Gradebooks {
+    @Override public Roster roster(long seed, int subjectsPerStudent, int gradesPerSubject, int students) {
+        return new BenchRoster(new SyntheticGradebook(seed, subjectsPerStudent, gradesPerSubject).roster(students));
+    }
+
+    @Override public List<String> csvLines(long seed, int subjectsPerStudent, int gradesPerSubject, int index) {
+        return new SyntheticGradebook(seed, subjectsPerStudent, gradesPerSubject).csvLines(index);
+    }
+
+    @Override public int writeCsv(long seed, int subjectsPerStudent, int gradesPerSubject, Path file, long targetBytes) throws IOException {
+        return new SyntheticGradebook(seed, subjectsPerStudent, gradesPerSubject).writeCsv(file, targetBytes);
+    }
+
+    @Override public List<String> parseCsvLine(String line) {
+        return CSVUtils.parseCsvLine(line);
+    }
+
+    @Override public int loadStudents(Path file) throws IOException {
+        return CSVUtils.loadStudents(file).size();
+    }
+
+    static final class BenchRoster implements Roster {
+        private final Student[] students;
+        private final List<Student> list;
+        private final String[] subjects;
+
+        BenchRoster(List<Student> roster) {
+            students = roster.toArray(new Student[0]);
+            list = Arrays.asList(students);
+            subjects = students.length == 0 ? new String[0] : students[0].getSubjects().toArray(new String[0]);
+        }
+
+        @Override public int size() { return students.length; }
+        @Override public int subjects() { return subjects.length; }
+
+        @Override public double subjectAverage(int student, int subject) {
+            return students[student].getSubjectAverage(subjects[subject]).orElse(0);
+        }
+
+        @Override public double overallAverage(int student) { return students[student].getOverallAverage().orElse(0); }
+        @Override public double weightedAverage(int student) { return students[student].getWeightedAverage().orElse(0); }
+        @Override public List<String> toCsvLines(int student) { return students[student].toCsvLines(); }
+        @Override public String summaryRow(int student) { return CSVUtils.summaryRow(students[student]); }
+        @Override public void saveStudents(Path file) throws IOException { CSVUtils.saveStudents(file, list); }
+        @Override public void exportSummary(OutputStream out) throws IOException { new SummaryExporter().export(list, out, null); }
+
+        @Override public Grades newStudent(String name) {
+            Student s = new Student(name);
+            return (subject, grade) -> s.addGrade(subjects[subject], grade);
+        }
+    }
+}
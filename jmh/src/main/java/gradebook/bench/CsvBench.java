@@ -0,0 +1,112 @@
+package gradebook.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// CSV parsing, loading and saving. Load sizes take K, M or G suffixes, for example
+// -p size=1M,16M,256M,1G; the generated files are cached in the temp directory between runs.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBench {
+    private static final int LINE_GRADES = 8;
+
+    // 4096 rows as saveStudents writes them, every 16th name quoted for a comma.
+    @State(Scope.Thread)
+    public static class Lines {
+        final String[] lines = new String[4096];
+        int at;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            for (int i = 0; i < lines.length; i += RosterState.SUBJECTS) {
+                List<String> rows = Gradebooks.INSTANCE.csvLines(RosterState.SEED, RosterState.SUBJECTS, LINE_GRADES, i);
+                for (int k = 0; k < RosterState.SUBJECTS && i + k < lines.length; k++) lines[i + k] = rows.get(k);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvFile {
+        @Param({ "1M", "16M" })
+        public String size;
+
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = Path.of(System.getProperty("java.io.tmpdir"), "gradebook-bench-" + RosterState.SEED + "-" + size + ".csv");
+            if (!Files.exists(file)) {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                Gradebooks.INSTANCE.writeCsv(RosterState.SEED, RosterState.SUBJECTS, LINE_GRADES, tmp, bytes(size));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Target {
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = Files.createTempFile("gradebook-bench", ".csv");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public List<String> parseCsvLine(Lines l) {
+        return Gradebooks.INSTANCE.parseCsvLine(l.lines[l.at++ & (l.lines.length - 1)]);
+    }
+
+    @Benchmark
+    public int loadStudents(CsvFile f) throws IOException {
+        return Gradebooks.INSTANCE.loadStudents(f.file);
+    }
+
+    @Benchmark
+    public List<String> toCsvLines(RosterState r) {
+        return r.students.toCsvLines(r.next());
+    }
+
+    @Benchmark
+    public long saveStudents(RosterState r, Target t) throws IOException {
+        r.students.saveStudents(t.file);
+        return Files.size(t.file);
+    }
+
+    static long bytes(String size) {
+        String p = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (p.endsWith("K")) unit = 1L << 10;
+        else if (p.endsWith("M")) unit = 1L << 20;
+        else if (p.endsWith("G")) unit = 1L << 30;
+        if (unit > 1) p = p.substring(0, p.length() - 1);
+        return Long.parseLong(p) * unit;
+    }
+}
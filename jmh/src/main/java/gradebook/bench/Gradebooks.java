@@ -0,0 +1,57 @@
+package gradebook.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+// What the benchmarks call in the application. JMH rejects benchmarks in the default package and
+// a named package cannot import from it, so BenchGradebooks, in the default package next to the
+// application classes, implements this and is loaded by name. Each benchmark calls through one
+// implementation, so the JIT inlines the calls.
+public interface Gradebooks {
+    Gradebooks INSTANCE = load();
+
+    // SyntheticGradebook(seed, subjectsPerStudent, gradesPerSubject).roster(students)
+    Roster roster(long seed, int subjectsPerStudent, int gradesPerSubject, int students);
+
+    // SyntheticGradebook.csvLines(index)
+    List<String> csvLines(long seed, int subjectsPerStudent, int gradesPerSubject, int index);
+
+    // SyntheticGradebook.writeCsv
+    int writeCsv(long seed, int subjectsPerStudent, int gradesPerSubject, Path file, long targetBytes) throws IOException;
+
+    List<String> parseCsvLine(String line);
+
+    // CSVUtils.loadStudents; returns the number of students.
+    int loadStudents(Path file) throws IOException;
+
+    // A roster addressed by index. Subjects are those of the first student, as the GUI's charts
+    // pick them, so other students may not have them.
+    interface Roster {
+        int size();
+        int subjects();
+        double subjectAverage(int student, int subject);
+        double overallAverage(int student);
+        double weightedAverage(int student);
+        List<String> toCsvLines(int student);
+        String summaryRow(int student);
+        void saveStudents(Path file) throws IOException;
+        // SummaryExporter.export, the work behind the GUI's Export Summary.
+        void exportSummary(OutputStream out) throws IOException;
+        Grades newStudent(String name);
+    }
+
+    // A new student taking grades in a roster's subjects.
+    interface Grades {
+        void addGrade(int subject, int grade);
+    }
+
+    private static Gradebooks load() {
+        try {
+            return (Gradebooks) Class.forName("BenchGradebooks").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchGradebooks is missing from the benchmark jar", e);
+        }
+    }
+}
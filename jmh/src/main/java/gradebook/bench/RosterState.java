@@ -0,0 +1,38 @@
+package gradebook.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// A synthetic roster per parameter pair, and a cursor that cycles through its students so no
+// single student stays hot in cache.
+@State(Scope.Thread)
+public class RosterState {
+    static final long SEED = 42;
+    static final int SUBJECTS = 5;
+
+    @Param({ "1000", "10000" })
+    public int roster;
+
+    @Param({ "10", "100" })
+    public int grades;
+
+    Gradebooks.Roster students;
+    private int at;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        students = Gradebooks.INSTANCE.roster(SEED, SUBJECTS, grades, roster);
+    }
+
+    int next() {
+        return at++ % roster;
+    }
+
+    // One of the first student's subjects, moving with the cursor; call before next().
+    int nextSubject() {
+        return at % students.subjects();
+    }
+}
@@ -0,0 +1,64 @@
+package gradebook.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Grade entry and the per-student statistics behind the detail view and the summary columns.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentBench {
+    // Fills a fresh student to the roster shape (5 subjects x grades), then starts another, so
+    // the grade arrays grow as they do while a gradebook is entered.
+    @State(Scope.Thread)
+    public static class Entry {
+        @Param({ "10", "100" })
+        public int grades;
+
+        Gradebooks.Roster subjects;
+        Gradebooks.Grades target;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            subjects = Gradebooks.INSTANCE.roster(RosterState.SEED, RosterState.SUBJECTS, grades, 1);
+        }
+    }
+
+    @Benchmark
+    public int addGrade(Entry e) {
+        int i = e.next++;
+        if (i % (e.grades * RosterState.SUBJECTS) == 0) e.target = e.subjects.newStudent("Bench");
+        e.target.addGrade(i % e.subjects.subjects(), i % 101);
+        return i;
+    }
+
+    @Benchmark
+    public double getSubjectAverage(RosterState r) {
+        int subject = r.nextSubject();
+        return r.students.subjectAverage(r.next(), subject);
+    }
+
+    @Benchmark
+    public double getOverallAverage(RosterState r) {
+        return r.students.overallAverage(r.next());
+    }
+
+    @Benchmark
+    public double getWeightedAverage(RosterState r) {
+        return r.students.weightedAverage(r.next());
+    }
+}
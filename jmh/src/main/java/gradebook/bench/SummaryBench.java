@@ -0,0 +1,30 @@
+package gradebook.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The summary export: one row, and the whole roster as Export Summary writes it, minus the disk.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummaryBench {
+    @Benchmark
+    public String summaryRow(RosterState r) {
+        return r.students.summaryRow(r.next());
+    }
+
+    @Benchmark
+    public void exportSummary(RosterState r) throws IOException {
+        r.students.exportSummary(OutputStream.nullOutputStream());
+    }
+}
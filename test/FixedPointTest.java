@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// FixedPoint.append2 must print exactly what String.format("%.2f") prints.
+class FixedPointTest {
+    private static String fast(double v) {
+        StringBuilder sb = new StringBuilder();
+        FixedPoint.append2(sb, v);
+        return sb.toString();
+    }
+
+    private static void check(double v) {
+        assertEquals(String.format("%.2f", v), fast(v), "append2(" + v + ")");
+    }
+
+    @Test
+    void edges() {
+        for (double v : new double[] { 0, -0.0, 0.005, 0.015, 0.125, 1.005, 2.675, 99.995, 100, -1.5,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE }) {
+            check(v);
+        }
+    }
+
+    // Above 1e7, v * 100 rounds away fraction bits and the fast path used to round wrongly:
+    // 1.58998818605E8 printed 158998818.60 instead of 158998818.61.
+    @Test
+    void largeValues() {
+        check(1.58998818605E8);
+        for (double v : new double[] { 1e7, Math.nextDown(1e7), Math.nextUp(1e7), 9_999_999.995, 9_999_999.985, 1e8, 1e9, 1e15 }) {
+            check(v);
+        }
+    }
+
+    @Test
+    void randomValues() {
+        Random r = new Random(12);
+        for (int i = 0; i < 200_000; i++) {
+            double scale = Math.pow(10, r.nextInt(10));
+            check(r.nextDouble() * scale);
+            // Near a tie: k.xx5 give or take a few ulps.
+            double tie = (r.nextInt((int) Math.min(scale, 1e9)) * 100 + r.nextInt(100) + 0.5) / 100;
+            check(tie);
+            check(Math.nextUp(tie));
+            check(Math.nextDown(tie));
+        }
+    }
+}
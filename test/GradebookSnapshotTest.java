@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Round-trip equivalence of GradebookSnapshot against the CSV path.
+//
+// A snapshot must give back exactly what was saved: names, subject order, raw weight bits,
+// weight-only subjects and every grade. Reduced to what CSV can hold (graded subjects, weights
+// to two places) it must match the CSV round trip row for row.
+class GradebookSnapshotTest {
+    private static final long SEED = 42;
+    private static final int STUDENTS = 5_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyRoster() throws IOException {
+        checkExact(new ArrayList<>());
+        checkAgainstCsv(new ArrayList<>());
+    }
+
+    @Test
+    void edgeCases() throws IOException {
+        checkExact(edgeRoster());
+        checkAgainstCsv(edgeRoster());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 8, 200 })
+    void synthetic(int grades) throws IOException {
+        List<Student> roster = new SyntheticGradebook(SEED, 5, grades).roster(grades > 8 ? STUDENTS / 20 : STUDENTS);
+        checkExact(roster);
+        checkAgainstCsv(roster);
+    }
+
+    // Saving over an existing snapshot replaces it and leaves no temp files behind.
+    @Test
+    void replacesExistingFile() throws IOException {
+        List<Student> roster = new SyntheticGradebook(SEED, 3, 4).roster(100);
+        Path file = dir.resolve("replace." + GradebookSnapshot.EXTENSION);
+        GradebookSnapshot.saveStudents(file, roster);
+        GradebookSnapshot.saveStudents(file, roster.subList(0, 10));
+        assertEquals(10, GradebookSnapshot.loadStudents(file).size(), "replaced snapshot still holds the old roster");
+        try (DirectoryStream<Path> tmps = Files.newDirectoryStream(dir, "*.tmp")) {
+            assertFalse(tmps.iterator().hasNext(), "save left a temp file behind");
+        }
+    }
+
+    // Damaged files fail with IOException instead of loading a partial roster.
+    @Test
+    void rejectsDamagedFiles() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GradebookSnapshot.write(bytes, new SyntheticGradebook(7, 3, 4).roster(50));
+        byte[] good = bytes.toByteArray();
+        byte[] magic = good.clone();
+        magic[0] = 'X';
+        expectRejected("bad magic", magic);
+        byte[] version = good.clone();
+        version[4] = 99;
+        expectRejected("unknown version", version);
+        for (int len : new int[] { 0, 3, 5, good.length / 2, good.length - 1 }) {
+            expectRejected("truncated to " + len + " bytes", Arrays.copyOf(good, len));
+        }
+    }
+
+    // Save, load and compare everything a student holds.
+    private void checkExact(List<Student> roster) throws IOException {
+        Path file = dir.resolve("exact." + GradebookSnapshot.EXTENSION);
+        GradebookSnapshot.saveStudents(file, roster);
+        List<Student> loaded = GradebookSnapshot.loadStudents(file);
+        assertEquals(roster.size(), loaded.size(), "students loaded");
+        for (int i = 0; i < roster.size(); i++) {
+            Student a = roster.get(i);
+            Student b = loaded.get(i);
+            b.verifyAggregates();
+            assertEquals(a.getName(), b.getName(), "student " + i);
+            assertTrue(sameState(a.state(), b.state()), a.getName() + " differs after the round trip");
+            assertEquals(CSVUtils.summaryRow(a), CSVUtils.summaryRow(b), "summary of " + a.getName());
+        }
+    }
+
+    // The snapshot and CSV round trips of the same roster must write the same CSV, and a roster
+    // loaded from CSV must survive a snapshot unchanged.
+    private void checkAgainstCsv(List<Student> roster) throws IOException {
+        Path csv = dir.resolve("roster.csv");
+        Path snap = dir.resolve("roster." + GradebookSnapshot.EXTENSION);
+        CSVUtils.saveStudents(csv, roster);
+        List<Student> fromCsv = CSVUtils.loadStudents(csv);
+        GradebookSnapshot.saveStudents(snap, roster);
+        List<Student> fromSnapshot = GradebookSnapshot.loadStudents(snap);
+        assertEquals(csvText(roster), csvText(fromSnapshot), "snapshot round trip writes different CSV");
+        assertEquals(sortedCsvText(fromCsv), sortedCsvText(fromSnapshot), "snapshot and CSV round trips differ");
+
+        GradebookSnapshot.saveStudents(snap, fromCsv);
+        List<Student> again = GradebookSnapshot.loadStudents(snap);
+        assertEquals(csvText(fromCsv), csvText(again), "CSV-loaded roster changes in a snapshot");
+    }
+
+    private static void expectRejected(String what, byte[] data) {
+        assertThrows(IOException.class, () -> GradebookSnapshot.read(new ByteArrayInputStream(data)), what);
+    }
+
+    // Students CSV handles badly or not at all: quoting, non-ASCII, weight-only subjects,
+    // weights with more than two places, no subjects, long grade runs and the grade range ends.
+    private static List<Student> edgeRoster() {
+        List<Student> out = new ArrayList<>();
+        Student quoted = new Student("O'Brien, \"Pat\"");
+        quoted.addGrade("Math, Advanced", 100);
+        quoted.addGrade("Math, Advanced", 0);
+        quoted.setSubjectWeight("Math, Advanced", 1.0 / 3);
+        out.add(quoted);
+        Student unicode = new Student("Zo\u00eb \u00c5berg \u6771");
+        unicode.addGrade("M\u00fasica", 77);
+        unicode.setSubjectWeight("M\u00fasica", 2.5);
+        out.add(unicode);
+        Student weightOnly = new Student("Weight Only");
+        weightOnly.setSubjectWeight("Art", 3.0);
+        weightOnly.addGrade("History", 55);
+        weightOnly.setSubjectWeight("Latin", 0.125);
+        out.add(weightOnly);
+        out.add(new Student("No Subjects"));
+        Student longRun = new Student("Long Run");
+        for (int i = 0; i < 70_000; i++) longRun.addGrade("Physics", i % 101);
+        longRun.addGrade("Chemistry", 42);
+        out.add(longRun);
+        return out;
+    }
+
+    private static boolean sameState(Student.State a, Student.State b) {
+        if (!Arrays.equals(a.gradedIds, b.gradedIds) || !Arrays.equals(a.gradedWeights, b.gradedWeights)) return false;
+        for (int i = 0; i < a.runs.length; i++) {
+            SubjectGrades.Run x = a.runs[i];
+            SubjectGrades.Run y = b.runs[i];
+            if (x.count != y.count || x.sum != y.sum || x.min != y.min || x.max != y.max) return false;
+            if (!Arrays.equals(x.grades, 0, x.count, y.grades, 0, y.count)) return false;
+        }
+        if (a.weightOnly.length != b.weightOnly.length) return false;
+        for (int k = 0; k < a.weightOnly.length; k++) {
+            if (a.ids[a.weightOnly[k]] != b.ids[b.weightOnly[k]]) return false;
+            if (Double.doubleToRawLongBits(a.weights[a.weightOnly[k]]) != Double.doubleToRawLongBits(b.weights[b.weightOnly[k]])) return false;
+        }
+        return true;
+    }
+
+    private static String csvText(List<Student> students) {
+        StringBuilder sb = new StringBuilder();
+        for (Student s : students) s.appendCsvLines(sb);
+        return sb.toString();
+    }
+
+    // CSV loading keys students by name, so compare independent of roster order.
+    private static String sortedCsvText(List<Student> students) {
+        List<Student> sorted = new ArrayList<>(students);
+        sorted.sort(Comparator.comparing(Student::getName));
+        return csvText(sorted);
+    }
+}
@@ -0,0 +1,33 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class RosterIndexTest {
+    private static RosterIndex index(String... names) {
+        StudentRegistry registry = new StudentRegistry();
+        RosterIndex index = RosterIndex.attach(registry);
+        for (String name : names) {
+            Student s = new Student(name);
+            s.addGrade("Math", 70);
+            registry.merge(List.of(s));
+        }
+        return index;
+    }
+
+    // Every name word must start some word of the name, in any order.
+    @Test
+    void nameWordsMatchInAnyOrder() {
+        RosterIndex index = index("John Smith", "Doe, Ann", "Annabel Doe", "Smithers Jo");
+        assertEquals(Set.of("doe, ann", "annabel doe"), index.compile("doe ann").matches());
+        assertEquals(Set.of("doe, ann", "annabel doe"), index.compile("ann doe").matches());
+        assertEquals(Set.of("john smith"), index.compile("smith john").matches());
+        assertEquals(Set.of("john smith", "smithers jo"), index.compile("jo smith").matches());
+        assertEquals(Set.of(), index.compile("smith bob").matches());
+        RosterIndex.Query mixed = index.compile("ann, doe subject:ma weighted=70");
+        assertEquals(Set.of("doe, ann", "annabel doe"), mixed.matches());
+        assertFalse(mixed.test("john smith"));
+    }
+}